@@ -0,0 +1,103 @@
+package dev.nighter.celestCombat.combat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one player-vs-player hit as the number of recently damaged players grows.
+ *
+ * Every hit advances a simulated clock by a millisecond and the expiry queue is
+ * drained once per simulated second, like the scheduled cleanup task, so the drain
+ * is part of the measured cost. Victims are hit in turn and stay recent for the
+ * whole run. {@code perHitCleanup} is the cleanup it replaced, which scanned the
+ * damage time and damage source maps with {@code removeIf} on every hit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DamageTrackerBenchmark {
+    private static final long EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int HITS_PER_SECOND = 1000;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int recentVictims;
+
+    private UUID[] victims;
+    private UUID[] attackers;
+    private int next;
+    private long clock;
+
+    private DamageTracker tracker;
+    private Map<UUID, Long> lastDamageTime;
+    private Map<UUID, UUID> lastDamageSource;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        victims = new UUID[recentVictims];
+        attackers = new UUID[recentVictims];
+        for (int i = 0; i < recentVictims; i++) {
+            victims[i] = new UUID(random.nextLong(), random.nextLong());
+            attackers[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        clock = 1_000_000L;
+        tracker = new DamageTracker(8, EXPIRY_MILLIS);
+        lastDamageTime = new ConcurrentHashMap<>();
+        lastDamageSource = new ConcurrentHashMap<>();
+        for (int i = 0; i < recentVictims; i++) {
+            tracker.recordHit(victims[i], attackers[i], 1.0, clock);
+            lastDamageTime.put(victims[i], clock);
+            lastDamageSource.put(victims[i], attackers[i]);
+        }
+    }
+
+    @Benchmark
+    public int expiryQueue() {
+        int victim = nextVictim();
+        long time = ++clock;
+        tracker.recordHit(victims[victim], attackers[victim], 1.0, time);
+
+        if (time % HITS_PER_SECOND == 0) {
+            return tracker.removeExpired(time);
+        }
+        return victim;
+    }
+
+    @Benchmark
+    public int perHitCleanup() {
+        int victim = nextVictim();
+        long time = ++clock;
+        lastDamageTime.put(victims[victim], time);
+        lastDamageSource.put(victims[victim], attackers[victim]);
+
+        long cutoff = time - EXPIRY_MILLIS;
+        lastDamageTime.entrySet().removeIf(entry -> entry.getValue() < cutoff);
+        lastDamageSource.keySet().removeIf(uuid -> !lastDamageTime.containsKey(uuid));
+        return victim;
+    }
+
+    private int nextVictim() {
+        int victim = next;
+        next = victim + 1 == recentVictims ? 0 : victim + 1;
+        return victim;
+    }
+}
@@ -5,11 +5,15 @@ import dev.nighter.celestCombat.bstats.Metrics;
 import dev.nighter.celestCombat.combat.CombatManager;
 import dev.nighter.celestCombat.combat.DeathAnimationManager;
 import dev.nighter.celestCombat.commands.CommandManager;
+import dev.nighter.celestCombat.configs.CombatConfig;
 import dev.nighter.celestCombat.configs.TimeFormatter;
 import dev.nighter.celestCombat.language.LanguageManager;
 import dev.nighter.celestCombat.language.MessageService;
 import dev.nighter.celestCombat.listeners.CombatListeners;
+import dev.nighter.celestCombat.listeners.CombatMovementListener;
 import dev.nighter.celestCombat.listeners.EnderPearlListener;
+import dev.nighter.celestCombat.hooks.protection.FakeBlockOverlay;
+import dev.nighter.celestCombat.hooks.protection.WorldBorderBarrier;
 import dev.nighter.celestCombat.hooks.protection.WorldGuardHook;
 import dev.nighter.celestCombat.hooks.protection.GriefPreventionHook;
 import dev.nighter.celestCombat.listeners.ItemRestrictionListener;
@@ -37,14 +41,18 @@ public final class CelestCombat extends JavaPlugin {
     private ConfigUpdater configUpdater;
     private LanguageUpdater languageUpdater;
     private TimeFormatter timeFormatter;
+    private volatile CombatConfig combatConfig;
     private CommandManager commandManager;
     private CombatManager combatManager;
     private KillRewardManager killRewardManager;
     private CombatListeners combatListeners;
+    private CombatMovementListener combatMovementListener;
     private EnderPearlListener enderPearlListener;
     private TridentListener tridentListener;
     private DeathAnimationManager deathAnimationManager;
     private NewbieProtectionManager newbieProtectionManager;
+    private FakeBlockOverlay fakeBlockOverlay;
+    private WorldBorderBarrier worldBorderBarrier;
     private WorldGuardHook worldGuardHook;
     private GriefPreventionHook griefPreventionHook;
 
@@ -68,6 +76,7 @@ public final class CelestCombat extends JavaPlugin {
         configUpdater = new ConfigUpdater(this);
         configUpdater.checkAndUpdateConfig();
         timeFormatter = new TimeFormatter(this);
+        reloadCombatConfig();
 
         deathAnimationManager = new DeathAnimationManager(this);
         combatManager = new CombatManager(this);
@@ -84,10 +93,20 @@ public final class CelestCombat extends JavaPlugin {
 
         getServer().getPluginManager().registerEvents(new ItemRestrictionListener(this, combatManager), this);
 
+        // Registers itself with Bukkit only while someone is in combat
+        combatMovementListener = new CombatMovementListener(this);
+
+        // Fake barrier blocks shown by the protection hooks
+        fakeBlockOverlay = new FakeBlockOverlay(this);
+        getServer().getPluginManager().registerEvents(fakeBlockOverlay, this);
+        worldBorderBarrier = new WorldBorderBarrier();
+        getServer().getPluginManager().registerEvents(worldBorderBarrier, this);
+
         // WorldGuard integration
         if (hasWorldGuard && getConfig().getBoolean("safezone_protection.enabled", true)) {
-            worldGuardHook = new WorldGuardHook(this, combatManager);
+            worldGuardHook = new WorldGuardHook(this, combatManager, fakeBlockOverlay, worldBorderBarrier);
             getServer().getPluginManager().registerEvents(worldGuardHook, this);
+            combatMovementListener.register(worldGuardHook);
             debug("WorldGuard safezone protection enabled");
         } else if(hasWorldGuard) {
             getLogger().info("Found WorldGuard but safe zone barrier is disabled in config.");
@@ -95,8 +114,9 @@ public final class CelestCombat extends JavaPlugin {
 
         // GriefPrevention integration
         if (hasGriefPrevention && getConfig().getBoolean("claim_protection.enabled", true)) {
-            griefPreventionHook = new GriefPreventionHook(this, combatManager);
+            griefPreventionHook = new GriefPreventionHook(this, combatManager, fakeBlockOverlay, worldBorderBarrier);
             getServer().getPluginManager().registerEvents(griefPreventionHook, this);
+            combatMovementListener.register(griefPreventionHook);
             debug("GriefPrevention claim protection enabled");
         } else if(hasGriefPrevention) {
             getLogger().info("Found GriefPrevention but claim protection is disabled in config.");
@@ -121,6 +141,10 @@ public final class CelestCombat extends JavaPlugin {
             combatListeners.shutdown();
         }
 
+        if (combatMovementListener != null) {
+            combatMovementListener.shutdown();
+        }
+
         if (enderPearlListener != null) {
             enderPearlListener.shutdown();
         }
@@ -137,6 +161,14 @@ public final class CelestCombat extends JavaPlugin {
             griefPreventionHook.cleanup();
         }
 
+        if (fakeBlockOverlay != null) {
+            fakeBlockOverlay.shutdown();
+        }
+
+        if (worldBorderBarrier != null) {
+            worldBorderBarrier.shutdown();
+        }
+
         if (killRewardManager != null) {
             killRewardManager.shutdown();
         }
@@ -204,6 +236,13 @@ public final class CelestCombat extends JavaPlugin {
         }
     }
 
+    /**
+     * Parses config.yml into a new {@link CombatConfig} and publishes it in one swap
+     */
+    public void reloadCombatConfig() {
+        combatConfig = CombatConfig.load(this);
+    }
+
     public void debug(String message) {
         if (debugMode) {
             getLogger().info("[DEBUG] " + message);
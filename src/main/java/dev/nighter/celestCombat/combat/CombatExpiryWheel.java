@@ -0,0 +1,240 @@
+package dev.nighter.celestCombat.combat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A hierarchical timing wheel that tracks combat tag deadlines.
+ *
+ * Deadlines are bucketed by the tick in which they expire, so advancing the
+ * wheel only visits the tags that are due in the elapsed slots instead of
+ * every tagged player. Far-away deadlines live on the coarser levels and are
+ * cascaded down as the wheel turns.
+ *
+ * All operations are O(1) except {@link #advance(long)}, which is proportional
+ * to the number of elapsed ticks plus the number of entries it touches.
+ */
+public class CombatExpiryWheel {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS; // 64 slots per level
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = 1L << (WHEEL_BITS * LEVELS);
+
+    private final long resolutionMillis;
+    private final Entry[][] slots = new Entry[LEVELS][WHEEL_SIZE];
+    private final Map<UUID, Entry> entries = new HashMap<>();
+
+    // The next tick that has not been processed yet
+    private long nextTick;
+
+    private static final class Entry {
+        final UUID playerUUID;
+        long tick;
+        int level;
+        int slot;
+        Entry prev;
+        Entry next;
+
+        Entry(UUID playerUUID) {
+            this.playerUUID = playerUUID;
+        }
+    }
+
+    /**
+     * Creates a new wheel
+     *
+     * @param resolutionMillis The length of one wheel tick in milliseconds
+     */
+    public CombatExpiryWheel(long resolutionMillis) {
+        this.resolutionMillis = Math.max(1L, resolutionMillis);
+        this.nextTick = System.currentTimeMillis() / this.resolutionMillis;
+    }
+
+    /**
+     * Schedules (or reschedules) the expiry of a player's combat tag
+     *
+     * @param playerUUID The tagged player
+     * @param deadlineMillis The time after which the tag is expired
+     */
+    public synchronized void schedule(UUID playerUUID, long deadlineMillis) {
+        // First tick boundary strictly after the deadline
+        long tick = deadlineMillis / resolutionMillis + 1;
+
+        Entry entry = entries.get(playerUUID);
+        if (entry == null) {
+            entry = new Entry(playerUUID);
+            entries.put(playerUUID, entry);
+        } else if (entry.tick == tick) {
+            return;
+        } else {
+            unlink(entry);
+        }
+
+        entry.tick = tick;
+        insert(entry);
+    }
+
+    /**
+     * Removes a player from the wheel
+     *
+     * @param playerUUID The player whose pending expiry should be dropped
+     */
+    public synchronized void cancel(UUID playerUUID) {
+        Entry entry = entries.remove(playerUUID);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Turns the wheel up to the given time and collects the tags that expired
+     *
+     * @param nowMillis The current time in milliseconds
+     * @return The players whose tags expired since the last call
+     */
+    public synchronized List<UUID> advance(long nowMillis) {
+        long targetTick = nowMillis / resolutionMillis;
+        if (targetTick < nextTick) {
+            return Collections.emptyList();
+        }
+
+        // After a very long stall (or a clock jump) rebuild instead of walking every tick
+        if (targetTick - nextTick >= MAX_SPAN) {
+            rebase(targetTick);
+        }
+
+        List<UUID> expired = null;
+        while (nextTick <= targetTick) {
+            int index = (int) (nextTick & WHEEL_MASK);
+
+            // Pull the next block of each coarser level down when the finer level wraps
+            if (index == 0) {
+                for (int level = 1; level < LEVELS; level++) {
+                    int levelIndex = (int) ((nextTick >> (WHEEL_BITS * level)) & WHEEL_MASK);
+                    cascade(level, levelIndex);
+                    if (levelIndex != 0) {
+                        break;
+                    }
+                }
+            }
+
+            Entry entry = slots[0][index];
+            slots[0][index] = null;
+            while (entry != null) {
+                Entry following = entry.next;
+                entry.prev = null;
+                entry.next = null;
+
+                if (entry.tick <= nextTick) {
+                    entries.remove(entry.playerUUID);
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(entry.playerUUID);
+                } else {
+                    insert(entry);
+                }
+                entry = following;
+            }
+
+            nextTick++;
+        }
+
+        return expired != null ? expired : Collections.emptyList();
+    }
+
+    /**
+     * Returns the number of scheduled tags
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes every scheduled tag
+     */
+    public synchronized void clear() {
+        for (Entry[] level : slots) {
+            java.util.Arrays.fill(level, null);
+        }
+        entries.clear();
+    }
+
+    private void cascade(int level, int index) {
+        Entry entry = slots[level][index];
+        slots[level][index] = null;
+
+        while (entry != null) {
+            Entry following = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            insert(entry);
+            entry = following;
+        }
+    }
+
+    private void rebase(long targetTick) {
+        for (Entry[] level : slots) {
+            java.util.Arrays.fill(level, null);
+        }
+
+        nextTick = targetTick;
+        for (Entry entry : entries.values()) {
+            entry.prev = null;
+            entry.next = null;
+            insert(entry);
+        }
+    }
+
+    private void insert(Entry entry) {
+        long delta = entry.tick - nextTick;
+        long placedTick = entry.tick;
+
+        if (delta < 0) {
+            // Already due, fire on the next processed tick
+            placedTick = nextTick;
+            delta = 0;
+        } else if (delta >= MAX_SPAN) {
+            // Park it on the top level, it is re-inserted when that slot cascades
+            placedTick = nextTick + MAX_SPAN - 1;
+            delta = MAX_SPAN - 1;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        int slot = (int) ((placedTick >> (WHEEL_BITS * level)) & WHEEL_MASK);
+        entry.level = level;
+        entry.slot = slot;
+
+        Entry head = slots[level][slot];
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) {
+            head.prev = entry;
+        }
+        slots[level][slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else if (slots[entry.level][entry.slot] == entry) {
+            slots[entry.level][entry.slot] = entry.next;
+        }
+
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+
+        entry.prev = null;
+        entry.next = null;
+    }
+}
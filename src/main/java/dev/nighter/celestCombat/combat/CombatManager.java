@@ -2,48 +2,42 @@ package dev.nighter.celestCombat.combat;
 
 import dev.nighter.celestCombat.CelestCombat;
 import dev.nighter.celestCombat.Scheduler;
-import lombok.Getter;
+import dev.nighter.celestCombat.configs.CombatConfig;
+import dev.nighter.celestCombat.listeners.CombatMovementListener;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.entity.Player;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class CombatManager {
     private final CelestCombat plugin;
-    @Getter private final Map<UUID, Long> playersInCombat;
-    private final Map<UUID, Scheduler.Task> combatTasks;
-    private final Map<UUID, UUID> combatOpponents;
+
+    // One session per online player, holding every bit of per-player combat state
+    private final Map<UUID, PlayerCombatSession> sessions = new ConcurrentHashMap<>();
+    // Subset of sessions that currently carry a combat tag
+    private final Map<UUID, PlayerCombatSession> taggedSessions = new ConcurrentHashMap<>();
+    private final Map<UUID, PlayerCombatSession> playersInCombatView = Collections.unmodifiableMap(taggedSessions);
+
+    // Hits collected during the current tick, applied once per player when the tick is over
+    private final Map<UUID, PendingTag> pendingTags = new ConcurrentHashMap<>();
+
+    private static final class PendingTag {
+        Player attacker;
+        long hitTime;
+    }
 
     // Single countdown task instead of per-player tasks
     private Scheduler.Task globalCountdownTask;
     private static final long COUNTDOWN_INTERVAL = 20L; // 1 second in ticks
 
-    @Getter private final Map<UUID, Long> enderPearlCooldowns;
-    @Getter private final Map<UUID, Long> tridentCooldowns = new ConcurrentHashMap<>();
-
-    // Combat configuration cache to avoid repeated config lookups
-    private long combatDurationTicks;
-    private long combatDurationSeconds;
-    private boolean disableFlightInCombat;
-    private long enderPearlCooldownTicks;
-    private long enderPearlCooldownSeconds;
-    private Map<String, Boolean> worldEnderPearlSettings = new ConcurrentHashMap<>();
-    private boolean enderPearlInCombatOnly;
-    private boolean enderPearlEnabled;
-    private boolean refreshCombatOnPearlLand;
-
-    // Trident configuration cache
-    private long tridentCooldownTicks;
-    private long tridentCooldownSeconds;
-    private Map<String, Boolean> worldTridentSettings = new ConcurrentHashMap<>();
-    private boolean tridentInCombatOnly;
-    private boolean tridentEnabled;
-    private boolean refreshCombatOnTridentLand;
-    private Map<String, Boolean> worldTridentBannedSettings = new ConcurrentHashMap<>();
+    // Combat tag expiry bucketed by end time, advanced by the countdown task
+    private final CombatExpiryWheel expiryWheel = new CombatExpiryWheel(COUNTDOWN_INTERVAL * 50L);
 
     // Cleanup task for expired cooldowns
     private Scheduler.Task cleanupTask;
@@ -51,93 +45,14 @@ public class CombatManager {
 
     public CombatManager(CelestCombat plugin) {
         this.plugin = plugin;
-        this.playersInCombat = new ConcurrentHashMap<>();
-        this.combatTasks = new ConcurrentHashMap<>();
-        this.combatOpponents = new ConcurrentHashMap<>();
-        this.enderPearlCooldowns = new ConcurrentHashMap<>();
-
-        // Cache configuration values to avoid repeated lookups
-        this.combatDurationTicks = plugin.getTimeFromConfig("combat.duration", "20s");
-        this.combatDurationSeconds = combatDurationTicks / 20;
-        this.disableFlightInCombat = plugin.getConfig().getBoolean("combat.disable_flight", true);
-
-        this.enderPearlCooldownTicks = plugin.getTimeFromConfig("enderpearl_cooldown.duration", "10s");
-        this.enderPearlCooldownSeconds = enderPearlCooldownTicks / 20;
-        this.enderPearlEnabled = plugin.getConfig().getBoolean("enderpearl_cooldown.enabled", true);
-        this.enderPearlInCombatOnly = plugin.getConfig().getBoolean("enderpearl_cooldown.in_combat_only", true);
-        this.refreshCombatOnPearlLand = plugin.getConfig().getBoolean("enderpearl.refresh_combat_on_land", false);
-
-        this.tridentCooldownTicks = plugin.getTimeFromConfig("trident_cooldown.duration", "10s");
-        this.tridentCooldownSeconds = tridentCooldownTicks / 20;
-        this.tridentEnabled = plugin.getConfig().getBoolean("trident_cooldown.enabled", true);
-        this.tridentInCombatOnly = plugin.getConfig().getBoolean("trident_cooldown.in_combat_only", true);
-        this.refreshCombatOnTridentLand = plugin.getConfig().getBoolean("trident.refresh_combat_on_land", false);
-
-        // Load per-world settings
-        loadWorldTridentSettings();
-
-        // Load per-world settings
-        loadWorldEnderPearlSettings();
-
-        // Start the global countdown timer
-        startGlobalCountdownTimer();
-    }
-
-    private void loadWorldTridentSettings() {
-        worldTridentSettings.clear();
-        worldTridentBannedSettings.clear();
 
-        // Load cooldown settings per world
-        if (plugin.getConfig().isConfigurationSection("trident_cooldown.worlds")) {
-            for (String worldName : Objects.requireNonNull(plugin.getConfig().getConfigurationSection("trident_cooldown.worlds")).getKeys(false)) {
-                boolean enabled = plugin.getConfig().getBoolean("trident_cooldown.worlds." + worldName, true);
-                worldTridentSettings.put(worldName, enabled);
-            }
-        }
-
-        // Load banned settings per world
-        if (plugin.getConfig().isConfigurationSection("trident.banned_worlds")) {
-            for (String worldName : Objects.requireNonNull(plugin.getConfig().getConfigurationSection("trident.banned_worlds")).getKeys(false)) {
-                boolean banned = plugin.getConfig().getBoolean("trident.banned_worlds." + worldName, false);
-                worldTridentBannedSettings.put(worldName, banned);
-            }
+        // Players already online (e.g. after a plugin reload) never fire a join event
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            createSession(player);
         }
 
-        // plugin.getLogger().info("Loaded world-specific trident settings: " + worldTridentSettings);
-    }
-
-    public void reloadConfig() {
-        // Update cached configuration values
-        this.combatDurationTicks = plugin.getTimeFromConfig("combat.duration", "20s");
-        this.combatDurationSeconds = combatDurationTicks / 20;
-        this.disableFlightInCombat = plugin.getConfig().getBoolean("combat.disable_flight", true);
-
-        this.enderPearlCooldownTicks = plugin.getTimeFromConfig("enderpearl_cooldown.duration", "10s");
-        this.enderPearlCooldownSeconds = enderPearlCooldownTicks / 20;
-        this.enderPearlEnabled = plugin.getConfig().getBoolean("enderpearl_cooldown.enabled", true);
-        this.enderPearlInCombatOnly = plugin.getConfig().getBoolean("enderpearl_cooldown.in_combat_only", true);
-        this.refreshCombatOnPearlLand = plugin.getConfig().getBoolean("enderpearl.refresh_combat_on_land", false);
-        loadWorldEnderPearlSettings();
-
-        this.tridentCooldownTicks = plugin.getTimeFromConfig("trident_cooldown.duration", "10s");
-        this.tridentCooldownSeconds = tridentCooldownTicks / 20;
-        this.tridentEnabled = plugin.getConfig().getBoolean("trident_cooldown.enabled", true);
-        this.tridentInCombatOnly = plugin.getConfig().getBoolean("trident_cooldown.in_combat_only", true);
-        this.refreshCombatOnTridentLand = plugin.getConfig().getBoolean("trident.refresh_combat_on_land", false);
-        loadWorldTridentSettings();
-    }
-
-
-    // Add this method to load world-specific settings
-    private void loadWorldEnderPearlSettings() {
-        worldEnderPearlSettings.clear();
-
-        if (plugin.getConfig().isConfigurationSection("enderpearl_cooldown.worlds")) {
-            for (String worldName : Objects.requireNonNull(plugin.getConfig().getConfigurationSection("enderpearl_cooldown.worlds")).getKeys(false)) {
-                boolean enabled = plugin.getConfig().getBoolean("enderpearl_cooldown.worlds." + worldName, true);
-                worldEnderPearlSettings.put(worldName, enabled);
-            }
-        }
+        // Start the global countdown timer
+        startGlobalCountdownTimer();
     }
 
     private void startGlobalCountdownTimer() {
@@ -148,59 +63,45 @@ public class CombatManager {
         globalCountdownTask = Scheduler.runTaskTimer(() -> {
             long currentTime = System.currentTimeMillis();
 
-            // Process all players in a single timer tick
-            for (Map.Entry<UUID, Long> entry : new HashMap<>(playersInCombat).entrySet()) {
-                UUID playerUUID = entry.getKey();
-                long combatEndTime = entry.getValue();
-
-                // Check if combat has expired
-                if (currentTime > combatEndTime) {
-                    Player player = Bukkit.getPlayer(playerUUID);
-                    if (player != null && player.isOnline()) {
-                        removeFromCombat(player);
-                    } else {
-                        // Player is offline, clean up
-                        playersInCombat.remove(playerUUID);
-                        combatOpponents.remove(playerUUID);
-                        Scheduler.Task task = combatTasks.remove(playerUUID);
-                        if (task != null) {
-                            task.cancel();
-                        }
-                    }
+            // Only the tags whose wheel slot came due are visited for expiry
+            List<UUID> expiredTags = expiryWheel.advance(currentTime);
+            for (UUID playerUUID : expiredTags) {
+                PlayerCombatSession session = taggedSessions.get(playerUUID);
+                if (session == null) {
+                    continue; // Already removed
+                }
+                long combatEndTime = session.getCombatEndTime();
+                if (currentTime <= combatEndTime) {
+                    // Extended while the slot was being drained
+                    expiryWheel.schedule(playerUUID, combatEndTime);
                     continue;
                 }
 
-                // Update countdown display for online players
-                Player player = Bukkit.getPlayer(playerUUID);
-                if (player != null && player.isOnline()) {
-                    updatePlayerCountdown(player, currentTime);
+                Player player = session.getPlayer();
+                if (player.isOnline()) {
+                    removeFromCombat(player);
+                } else {
+                    // Player is offline, clean up
+                    clearCombatTag(session);
                 }
             }
 
-            // Handle ender pearl cooldowns
-            enderPearlCooldowns.entrySet().removeIf(entry ->
-                    currentTime > entry.getValue() ||
-                            Bukkit.getPlayer(entry.getKey()) == null
-            );
-
-            tridentCooldowns.entrySet().removeIf(entry ->
-                    currentTime > entry.getValue() ||
-                            Bukkit.getPlayer(entry.getKey()) == null
-            );
+            // Update countdown display for players still in combat
+            for (PlayerCombatSession session : taggedSessions.values()) {
+                if (session.getPlayer().isOnline()) {
+                    updatePlayerCountdown(session, currentTime);
+                }
+            }
 
         }, 0L, COUNTDOWN_INTERVAL);
     }
 
-    private void updatePlayerCountdown(Player player, long currentTime) {
-        if (player == null || !player.isOnline()) return;
+    private void updatePlayerCountdown(PlayerCombatSession session, long currentTime) {
+        Player player = session.getPlayer();
 
-        UUID playerUUID = player.getUniqueId();
-        boolean inCombat = playersInCombat.containsKey(playerUUID) &&
-                currentTime <= playersInCombat.get(playerUUID);
-        boolean hasPearlCooldown = enderPearlCooldowns.containsKey(playerUUID) &&
-                currentTime <= enderPearlCooldowns.get(playerUUID);
-        boolean hasTridentCooldown = tridentCooldowns.containsKey(playerUUID) &&
-                currentTime <= tridentCooldowns.get(playerUUID);
+        boolean inCombat = session.isInCombat(currentTime);
+        boolean hasPearlCooldown = session.hasEnderPearlCooldown(currentTime);
+        boolean hasTridentCooldown = session.hasTridentCooldown(currentTime);
 
         if (!inCombat && !hasPearlCooldown && !hasTridentCooldown) {
             return;
@@ -210,25 +111,25 @@ public class CombatManager {
         placeholders.put("player", player.getName());
 
         if (inCombat) {
-            int remainingCombatTime = getRemainingCombatTime(player, currentTime);
+            int remainingCombatTime = remainingSeconds(session.getCombatEndTime(), currentTime);
             placeholders.put("combat_time", String.valueOf(remainingCombatTime));
 
             if (hasPearlCooldown && hasTridentCooldown) {
                 // All three cooldowns active - show combined message
-                int remainingPearlTime = getRemainingEnderPearlCooldown(player, currentTime);
-                int remainingTridentTime = getRemainingTridentCooldown(player, currentTime);
+                int remainingPearlTime = remainingSeconds(session.getEnderPearlCooldownEnd(), currentTime);
+                int remainingTridentTime = remainingSeconds(session.getTridentCooldownEnd(), currentTime);
 
                 placeholders.put("pearl_time", String.valueOf(remainingPearlTime));
                 placeholders.put("trident_time", String.valueOf(remainingTridentTime));
                 plugin.getMessageService().sendMessage(player, "combat_pearl_trident_countdown", placeholders);
             } else if (hasPearlCooldown) {
                 // Combat + pearl cooldown active
-                int remainingPearlTime = getRemainingEnderPearlCooldown(player, currentTime);
+                int remainingPearlTime = remainingSeconds(session.getEnderPearlCooldownEnd(), currentTime);
                 placeholders.put("pearl_time", String.valueOf(remainingPearlTime));
                 plugin.getMessageService().sendMessage(player, "combat_pearl_countdown", placeholders);
             } else if (hasTridentCooldown) {
                 // Combat + trident cooldown active
-                int remainingTridentTime = getRemainingTridentCooldown(player, currentTime);
+                int remainingTridentTime = remainingSeconds(session.getTridentCooldownEnd(), currentTime);
                 placeholders.put("trident_time", String.valueOf(remainingTridentTime));
                 plugin.getMessageService().sendMessage(player, "combat_trident_countdown", placeholders);
             } else {
@@ -240,22 +141,22 @@ public class CombatManager {
             }
         } else if (hasPearlCooldown && hasTridentCooldown) {
             // Both pearl and trident cooldowns but no combat
-            int remainingPearlTime = getRemainingEnderPearlCooldown(player, currentTime);
-            int remainingTridentTime = getRemainingTridentCooldown(player, currentTime);
+            int remainingPearlTime = remainingSeconds(session.getEnderPearlCooldownEnd(), currentTime);
+            int remainingTridentTime = remainingSeconds(session.getTridentCooldownEnd(), currentTime);
 
             placeholders.put("pearl_time", String.valueOf(remainingPearlTime));
             placeholders.put("trident_time", String.valueOf(remainingTridentTime));
             plugin.getMessageService().sendMessage(player, "pearl_trident_countdown", placeholders);
         } else if (hasPearlCooldown) {
             // Only pearl cooldown active
-            int remainingPearlTime = getRemainingEnderPearlCooldown(player, currentTime);
+            int remainingPearlTime = remainingSeconds(session.getEnderPearlCooldownEnd(), currentTime);
             if (remainingPearlTime > 0) {
                 placeholders.put("time", String.valueOf(remainingPearlTime));
                 plugin.getMessageService().sendMessage(player, "pearl_only_countdown", placeholders);
             }
         } else if (hasTridentCooldown) {
             // Only trident cooldown active
-            int remainingTridentTime = getRemainingTridentCooldown(player, currentTime);
+            int remainingTridentTime = remainingSeconds(session.getTridentCooldownEnd(), currentTime);
             if (remainingTridentTime > 0) {
                 placeholders.put("time", String.valueOf(remainingTridentTime));
                 plugin.getMessageService().sendMessage(player, "trident_only_countdown", placeholders);
@@ -263,25 +164,107 @@ public class CombatManager {
         }
     }
 
+    private static int remainingSeconds(long endTime, long currentTime) {
+        return (int) Math.ceil(Math.max(0, (endTime - currentTime) / 1000.0));
+    }
+
+    /**
+     * Creates the combat session for a player, called when they join
+     */
+    public PlayerCombatSession createSession(Player player) {
+        return sessions.computeIfAbsent(player.getUniqueId(), uuid -> new PlayerCombatSession(player));
+    }
+
+    /**
+     * Drops the combat session of a player, called when they quit
+     */
+    public void removeSession(Player player) {
+        if (player == null) return;
+
+        UUID playerUUID = player.getUniqueId();
+        sessions.remove(playerUUID);
+        pendingTags.remove(playerUUID);
+        expiryWheel.cancel(playerUUID);
+        if (taggedSessions.remove(playerUUID) != null) {
+            refreshMovementListener();
+        }
+    }
+
+    /**
+     * Gets the combat session of an online player
+     *
+     * @return The session, or null if the player has none
+     */
+    public PlayerCombatSession getSession(Player player) {
+        return player == null ? null : sessions.get(player.getUniqueId());
+    }
+
+    /**
+     * Read-only view of the sessions that currently carry a combat tag
+     */
+    public Map<UUID, PlayerCombatSession> getPlayersInCombat() {
+        return playersInCombatView;
+    }
+
+    /**
+     * Queues a combat tag caused by a hit, to be applied at the end of the current tick.
+     *
+     * Only the latest hit per tagged player is kept, so repeated hits within one tick
+     * (sweeping edge, arrow spam, crystals) cost a single map update each and the
+     * permission and flight checks run once. Applying the latest hit gives the same
+     * end time and opponent as tagging on every hit would.
+     */
+    public void queueCombatTag(Player player, Player attacker) {
+        if (player == null || attacker == null) return;
+
+        long hitTime = System.currentTimeMillis();
+        PendingTag created = new PendingTag();
+        PendingTag queued = pendingTags.compute(player.getUniqueId(), (uuid, pending) -> {
+            PendingTag tag = pending == null ? created : pending;
+            tag.attacker = attacker;
+            tag.hitTime = hitTime;
+            return tag;
+        });
+
+        // First hit this tick, schedule the flush on the player's region outside the map lock
+        if (queued == created) {
+            Scheduler.runEntityTask(player, () -> flushPendingTag(player));
+        }
+    }
+
+    /**
+     * Applies a queued combat tag right away, used by death, quit and kick handling
+     * so they see every hit that happened earlier in the same tick
+     */
+    public void flushPendingTag(Player player) {
+        if (player == null) return;
+
+        PendingTag pending = pendingTags.remove(player.getUniqueId());
+        if (pending != null) {
+            tagPlayer(player, pending.attacker, pending.hitTime);
+        }
+    }
+
     public void tagPlayer(Player player, Player attacker) {
+        tagPlayer(player, attacker, System.currentTimeMillis());
+    }
+
+    private void tagPlayer(Player player, Player attacker, long tagTime) {
         if (player == null || attacker == null) return;
 
         if (player.hasPermission("celestcombat.bypass.tag")) {
             return;
         }
 
-        UUID playerUUID = player.getUniqueId();
-        long newEndTime = System.currentTimeMillis() + (combatDurationSeconds * 1000L);
+        PlayerCombatSession session = createSession(player);
+        UUID attackerUUID = attacker.getUniqueId();
+        long newEndTime = tagTime + plugin.getCombatConfig().combat().durationMillis();
 
-        boolean alreadyInCombat = playersInCombat.containsKey(playerUUID);
-        boolean alreadyInCombatWithAttacker = alreadyInCombat &&
-                attacker.getUniqueId().equals(combatOpponents.get(playerUUID));
+        boolean alreadyInCombatWithAttacker = session.isTagged() &&
+                attackerUUID.equals(session.getOpponentUUID());
 
-        if (alreadyInCombatWithAttacker) {
-            long currentEndTime = playersInCombat.get(playerUUID);
-            if (newEndTime <= currentEndTime) {
-                return; // Don't reset the timer if it would make it shorter
-            }
+        if (alreadyInCombatWithAttacker && newEndTime <= session.getCombatEndTime()) {
+            return; // Don't reset the timer if it would make it shorter
         }
 
         // Check if we should disable flight
@@ -289,13 +272,20 @@ public class CombatManager {
             player.setFlying(false);
         }
 
-        combatOpponents.put(playerUUID, attacker.getUniqueId());
-        playersInCombat.put(playerUUID, newEndTime);
+        // Ground players that are already gliding when elytra are restricted
+        if (player.isGliding() && plugin.getCombatConfig().itemRestrictions().isDisabled(Material.ELYTRA)) {
+            player.setGliding(false);
+
+            Map<String, String> placeholders = new HashMap<>();
+            placeholders.put("player", player.getName());
+            placeholders.put("item", "Elytra");
+            plugin.getMessageService().sendMessage(player, "item_use_blocked_in_combat", placeholders);
+        }
 
-        // Cancel existing task if any
-        Scheduler.Task existingTask = combatTasks.get(playerUUID);
-        if (existingTask != null) {
-            existingTask.cancel();
+        session.setCombat(newEndTime, attackerUUID);
+        expiryWheel.schedule(session.getPlayerUUID(), newEndTime);
+        if (taggedSessions.put(session.getPlayerUUID(), session) == null) {
+            refreshMovementListener();
         }
     }
 
@@ -309,19 +299,15 @@ public class CombatManager {
     public void removeFromCombat(Player player) {
         if (player == null) return;
 
-        UUID playerUUID = player.getUniqueId();
+        // Hits queued earlier in this tick must not tag the player again
+        pendingTags.remove(player.getUniqueId());
 
-        if (!playersInCombat.containsKey(playerUUID)) {
+        PlayerCombatSession session = sessions.get(player.getUniqueId());
+        if (session == null || !session.isTagged()) {
             return; // Player is not in combat
         }
 
-        playersInCombat.remove(playerUUID);
-        combatOpponents.remove(playerUUID);
-
-        Scheduler.Task task = combatTasks.remove(playerUUID);
-        if (task != null) {
-            task.cancel();
-        }
+        clearCombatTag(session);
 
         // Send appropriate message if player was in combat
         if (player.isOnline()) {
@@ -332,62 +318,57 @@ public class CombatManager {
     public void removeFromCombatSilently(Player player) {
         if (player == null) return;
 
-        UUID playerUUID = player.getUniqueId();
-
-        playersInCombat.remove(playerUUID);
-        combatOpponents.remove(playerUUID);
+        pendingTags.remove(player.getUniqueId());
 
-        Scheduler.Task task = combatTasks.remove(playerUUID);
-        if (task != null) {
-            task.cancel();
+        PlayerCombatSession session = sessions.get(player.getUniqueId());
+        if (session != null) {
+            clearCombatTag(session);
         }
 
         // No message is sent
     }
 
-    public Player getCombatOpponent(Player player) {
-        if (player == null) return null;
+    private void clearCombatTag(PlayerCombatSession session) {
+        session.clearCombat();
+        expiryWheel.cancel(session.getPlayerUUID());
+        if (taggedSessions.remove(session.getPlayerUUID()) != null) {
+            refreshMovementListener();
+        }
+    }
 
-        UUID playerUUID = player.getUniqueId();
-        if (!playersInCombat.containsKey(playerUUID)) return null;
+    private void refreshMovementListener() {
+        // Movement handlers only need to be registered while someone is tagged
+        CombatMovementListener movementListener = plugin.getCombatMovementListener();
+        if (movementListener != null) {
+            movementListener.refreshRegistration();
+        }
+    }
+
+    public Player getCombatOpponent(Player player) {
+        PlayerCombatSession session = getSession(player);
+        if (session == null || !session.isTagged()) return null;
 
-        UUID opponentUUID = combatOpponents.get(playerUUID);
+        UUID opponentUUID = session.getOpponentUUID();
         if (opponentUUID == null) return null;
 
         return Bukkit.getPlayer(opponentUUID);
     }
 
     public boolean isInCombat(Player player) {
-        if (player == null) return false;
-
-        UUID playerUUID = player.getUniqueId();
-        if (!playersInCombat.containsKey(playerUUID)) {
-            return false;
-        }
-
-        long combatEndTime = playersInCombat.get(playerUUID);
-        long currentTime = System.currentTimeMillis();
-
-        if (currentTime > combatEndTime) {
-            removeFromCombat(player);
-            return false;
-        }
-
-        return true;
+        // Read-only: expired tags are removed by the countdown task, not here
+        PlayerCombatSession session = getSession(player);
+        return session != null && session.isInCombat(System.currentTimeMillis());
     }
 
-    public int getRemainingCombatTime(Player player) {
-        return getRemainingCombatTime(player, System.currentTimeMillis());
+    public long getCombatDurationMillis() {
+        return plugin.getCombatConfig().combat().durationMillis();
     }
 
-    private int getRemainingCombatTime(Player player, long currentTime) {
-        if (player == null) return 0;
-
-        UUID playerUUID = player.getUniqueId();
-        if (!playersInCombat.containsKey(playerUUID)) return 0;
+    public int getRemainingCombatTime(Player player) {
+        PlayerCombatSession session = getSession(player);
+        if (session == null || !session.isTagged()) return 0;
 
-        long endTime = playersInCombat.get(playerUUID);
-        return (int) Math.ceil(Math.max(0, (endTime - currentTime) / 1000.0));
+        return remainingSeconds(session.getCombatEndTime(), System.currentTimeMillis());
     }
 
     public void updateMutualCombat(Player player1, Player player2) {
@@ -401,74 +382,54 @@ public class CombatManager {
     public void setEnderPearlCooldown(Player player) {
         if (player == null) return;
 
-        // Only set cooldown if enabled in config
-        if (!enderPearlEnabled) {
-            return;
-        }
+        CombatConfig.Cooldown cooldown = plugin.getCombatConfig().enderPearl();
 
-        // Check world-specific settings
-        String worldName = player.getWorld().getName();
-        if (worldEnderPearlSettings.containsKey(worldName) && !worldEnderPearlSettings.get(worldName)) {
-            return; // Don't set cooldown in this world
+        // Only set cooldown if enabled in config and in this world
+        if (!cooldown.isEnabledIn(player.getWorld().getName())) {
+            return;
         }
 
         // Check if we should only apply cooldown in combat
-        if (enderPearlInCombatOnly && !isInCombat(player)) {
+        if (cooldown.inCombatOnly() && !isInCombat(player)) {
             return;
         }
 
-        enderPearlCooldowns.put(player.getUniqueId(),
-                System.currentTimeMillis() + (enderPearlCooldownSeconds * 1000L));
+        createSession(player).setEnderPearlCooldownEnd(
+                System.currentTimeMillis() + cooldown.durationMillis());
     }
 
     public boolean isEnderPearlOnCooldown(Player player) {
         if (player == null) return false;
 
-        // If all ender pearl cooldowns are disabled globally, always return false
-        if (!enderPearlEnabled) {
-            return false;
-        }
-
-        // Check world-specific settings
-        String worldName = player.getWorld().getName();
-        if (worldEnderPearlSettings.containsKey(worldName) && !worldEnderPearlSettings.get(worldName)) {
-            return false; // Cooldown disabled for this specific world
-        }
+        CombatConfig.Cooldown cooldown = plugin.getCombatConfig().enderPearl();
 
-        // Check if we should only apply cooldown in combat
-        if (enderPearlInCombatOnly && !isInCombat(player)) {
+        // Cooldowns disabled globally or for this specific world
+        if (!cooldown.isEnabledIn(player.getWorld().getName())) {
             return false;
         }
 
-        UUID playerUUID = player.getUniqueId();
-        if (!enderPearlCooldowns.containsKey(playerUUID)) {
-            return false;
-        }
-
-        long cooldownEndTime = enderPearlCooldowns.get(playerUUID);
-        long currentTime = System.currentTimeMillis();
-
-        if (currentTime > cooldownEndTime) {
-            enderPearlCooldowns.remove(playerUUID);
+        // Check if we should only apply cooldown in combat
+        if (cooldown.inCombatOnly() && !isInCombat(player)) {
             return false;
         }
 
-        return true;
+        PlayerCombatSession session = getSession(player);
+        return session != null && session.hasEnderPearlCooldown(System.currentTimeMillis());
     }
 
     public void refreshCombatOnPearlLand(Player player) {
-        if (player == null || !refreshCombatOnPearlLand) return;
+        if (player == null || !plugin.getCombatConfig().enderPearl().refreshCombatOnLand()) return;
 
         // Only refresh if player is already in combat
         if (!isInCombat(player)) return;
 
-        UUID playerUUID = player.getUniqueId();
-        long newEndTime = System.currentTimeMillis() + (combatDurationSeconds * 1000L);
-        long currentEndTime = playersInCombat.getOrDefault(playerUUID, 0L);
+        PlayerCombatSession session = getSession(player);
+        long newEndTime = System.currentTimeMillis() + plugin.getCombatConfig().combat().durationMillis();
 
         // Only extend the combat time, don't shorten it
-        if (newEndTime > currentEndTime) {
-            playersInCombat.put(playerUUID, newEndTime);
+        if (newEndTime > session.getCombatEndTime()) {
+            session.setCombatEndTime(newEndTime);
+            expiryWheel.schedule(session.getPlayerUUID(), newEndTime);
 
             // Debug message if debug is enabled
             plugin.debug("Refreshed combat time for " + player.getName() + " due to pearl landing");
@@ -476,24 +437,17 @@ public class CombatManager {
     }
 
     public int getRemainingEnderPearlCooldown(Player player) {
-        return getRemainingEnderPearlCooldown(player, System.currentTimeMillis());
-    }
+        PlayerCombatSession session = getSession(player);
+        if (session == null || session.getEnderPearlCooldownEnd() == 0L) return 0;
 
-    private int getRemainingEnderPearlCooldown(Player player, long currentTime) {
-        if (player == null) return 0;
-
-        UUID playerUUID = player.getUniqueId();
-        if (!enderPearlCooldowns.containsKey(playerUUID)) return 0;
-
-        long endTime = enderPearlCooldowns.get(playerUUID);
-        return (int) Math.ceil(Math.max(0, (endTime - currentTime) / 1000.0));
+        return remainingSeconds(session.getEnderPearlCooldownEnd(), System.currentTimeMillis());
     }
 
     public boolean shouldDisableFlight(Player player) {
         if (player == null) return false;
 
         // If flight is enabled in combat by config or player isn't in combat, don't disable flight
-        if (!disableFlightInCombat || !isInCombat(player)) {
+        if (!plugin.getCombatConfig().combat().disableFlight() || !isInCombat(player)) {
             return false;
         }
 
@@ -508,82 +462,61 @@ public class CombatManager {
     public void setTridentCooldown(Player player) {
         if (player == null) return;
 
-        // Only set cooldown if enabled in config
-        if (!tridentEnabled) {
-            return;
-        }
+        CombatConfig.Cooldown cooldown = plugin.getCombatConfig().trident();
 
-        // Check world-specific settings
-        String worldName = player.getWorld().getName();
-        if (worldTridentSettings.containsKey(worldName) && !worldTridentSettings.get(worldName)) {
-            return; // Don't set cooldown in this world
+        // Only set cooldown if enabled in config and in this world
+        if (!cooldown.isEnabledIn(player.getWorld().getName())) {
+            return;
         }
 
         // Check if we should only apply cooldown in combat
-        if (tridentInCombatOnly && !isInCombat(player)) {
+        if (cooldown.inCombatOnly() && !isInCombat(player)) {
             return;
         }
 
-        tridentCooldowns.put(player.getUniqueId(),
-                System.currentTimeMillis() + (tridentCooldownSeconds * 1000L));
+        createSession(player).setTridentCooldownEnd(
+                System.currentTimeMillis() + cooldown.durationMillis());
     }
 
     public boolean isTridentOnCooldown(Player player) {
         if (player == null) return false;
 
-        // If all trident cooldowns are disabled globally, always return false
-        if (!tridentEnabled) {
-            return false;
-        }
+        CombatConfig.Cooldown cooldown = plugin.getCombatConfig().trident();
 
-        // Check world-specific settings
-        String worldName = player.getWorld().getName();
-        if (worldTridentSettings.containsKey(worldName) && !worldTridentSettings.get(worldName)) {
-            return false; // Cooldown disabled for this specific world
-        }
-
-        // Check if we should only apply cooldown in combat
-        if (tridentInCombatOnly && !isInCombat(player)) {
-            return false;
-        }
-
-        UUID playerUUID = player.getUniqueId();
-        if (!tridentCooldowns.containsKey(playerUUID)) {
+        // Cooldowns disabled globally or for this specific world
+        if (!cooldown.isEnabledIn(player.getWorld().getName())) {
             return false;
         }
 
-        long cooldownEndTime = tridentCooldowns.get(playerUUID);
-        long currentTime = System.currentTimeMillis();
-
-        if (currentTime > cooldownEndTime) {
-            tridentCooldowns.remove(playerUUID);
+        // Check if we should only apply cooldown in combat
+        if (cooldown.inCombatOnly() && !isInCombat(player)) {
             return false;
         }
 
-        return true;
+        PlayerCombatSession session = getSession(player);
+        return session != null && session.hasTridentCooldown(System.currentTimeMillis());
     }
 
     public boolean isTridentBanned(Player player) {
         if (player == null) return false;
 
         // Check world-specific ban settings
-        String worldName = player.getWorld().getName();
-        return worldTridentBannedSettings.getOrDefault(worldName, false);
+        return plugin.getCombatConfig().isTridentBanned(player.getWorld().getName());
     }
 
     public void refreshCombatOnTridentLand(Player player) {
-        if (player == null || !refreshCombatOnTridentLand) return;
+        if (player == null || !plugin.getCombatConfig().trident().refreshCombatOnLand()) return;
 
         // Only refresh if player is already in combat
         if (!isInCombat(player)) return;
 
-        UUID playerUUID = player.getUniqueId();
-        long newEndTime = System.currentTimeMillis() + (combatDurationSeconds * 1000L);
-        long currentEndTime = playersInCombat.getOrDefault(playerUUID, 0L);
+        PlayerCombatSession session = getSession(player);
+        long newEndTime = System.currentTimeMillis() + plugin.getCombatConfig().combat().durationMillis();
 
         // Only extend the combat time, don't shorten it
-        if (newEndTime > currentEndTime) {
-            playersInCombat.put(playerUUID, newEndTime);
+        if (newEndTime > session.getCombatEndTime()) {
+            session.setCombatEndTime(newEndTime);
+            expiryWheel.schedule(session.getPlayerUUID(), newEndTime);
 
             // Debug message if debug is enabled
             plugin.debug("Refreshed combat time for " + player.getName() + " due to trident landing");
@@ -591,17 +524,10 @@ public class CombatManager {
     }
 
     public int getRemainingTridentCooldown(Player player) {
-        return getRemainingTridentCooldown(player, System.currentTimeMillis());
-    }
-
-    private int getRemainingTridentCooldown(Player player, long currentTime) {
-        if (player == null) return 0;
+        PlayerCombatSession session = getSession(player);
+        if (session == null || session.getTridentCooldownEnd() == 0L) return 0;
 
-        UUID playerUUID = player.getUniqueId();
-        if (!tridentCooldowns.containsKey(playerUUID)) return 0;
-
-        long endTime = tridentCooldowns.get(playerUUID);
-        return (int) Math.ceil(Math.max(0, (endTime - currentTime) / 1000.0));
+        return remainingSeconds(session.getTridentCooldownEnd(), System.currentTimeMillis());
     }
 
 
@@ -618,13 +544,9 @@ public class CombatManager {
             cleanupTask = null;
         }
 
-        // Cancel all individual tasks
-        combatTasks.values().forEach(Scheduler.Task::cancel);
-        combatTasks.clear();
-
-        playersInCombat.clear();
-        combatOpponents.clear();
-        enderPearlCooldowns.clear();
-        tridentCooldowns.clear();
+        expiryWheel.clear();
+        pendingTags.clear();
+        taggedSessions.clear();
+        sessions.clear();
     }
 }
\ No newline at end of file
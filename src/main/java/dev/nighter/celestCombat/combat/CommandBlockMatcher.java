@@ -0,0 +1,137 @@
+package dev.nighter.celestCombat.combat;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which commands are blocked during combat, compiled once from the
+ * configured command list.
+ *
+ * Plain entries go into a case-folded hash set, entries ending in {@code *} go
+ * into a prefix trie, so a lookup costs O(command length) regardless of the
+ * list size. A typed command is checked under its label, its label without a
+ * {@code plugin:} namespace and its primary name from the server command map,
+ * so namespaced forms and aliases can't slip past the list. In whitelist mode the
+ * derived names only count when the command map resolves them to the same command.
+ */
+public class CommandBlockMatcher {
+    private final boolean whitelist;
+    private final Set<String> exactCommands;
+    private final TrieNode prefixRoot;
+
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new HashMap<>();
+        private boolean terminal;
+    }
+
+    private CommandBlockMatcher(boolean whitelist, Set<String> exactCommands, TrieNode prefixRoot) {
+        this.whitelist = whitelist;
+        this.exactCommands = exactCommands;
+        this.prefixRoot = prefixRoot;
+    }
+
+    /**
+     * Compiles a command list
+     *
+     * @param whitelist True if the list holds the allowed commands, false if it holds the blocked ones
+     * @param commands The configured command names, optionally ending in * for a prefix match
+     * @return The compiled matcher
+     */
+    public static CommandBlockMatcher compile(boolean whitelist, List<String> commands) {
+        Set<String> exact = new HashSet<>();
+        TrieNode root = new TrieNode();
+
+        for (String entry : commands) {
+            if (entry == null) continue;
+
+            String command = normalize(entry.trim());
+            if (command.endsWith("*")) {
+                TrieNode node = root;
+                String prefix = command.substring(0, command.length() - 1);
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.children.computeIfAbsent(prefix.charAt(i), c -> new TrieNode());
+                }
+                node.terminal = true;
+            } else if (!command.isEmpty()) {
+                exact.add(command);
+            }
+        }
+
+        return new CommandBlockMatcher(whitelist, Collections.unmodifiableSet(exact), root);
+    }
+
+    /**
+     * Checks whether a command typed by a tagged player should be blocked
+     *
+     * @param label The command label without the leading slash
+     * @param commandMap The server command map used to resolve aliases, may be null
+     * @return True if the command is blocked
+     */
+    public boolean isBlocked(String label, CommandMap commandMap) {
+        String command = normalize(label);
+        if (matches(command)) {
+            return !whitelist;
+        }
+
+        Command resolved = commandMap != null ? commandMap.getCommand(command) : null;
+
+        // Strip the plugin namespace, /essentials:home is /home
+        int namespaceEnd = command.indexOf(':');
+        String bareCommand = namespaceEnd >= 0 ? command.substring(namespaceEnd + 1) : command;
+        if (namespaceEnd >= 0 && matches(bareCommand) && isSameCommand(bareCommand, resolved, commandMap)) {
+            return !whitelist;
+        }
+
+        // Resolve aliases to the command they belong to
+        if (resolved != null) {
+            String primary = normalize(resolved.getName());
+            if (!primary.equals(bareCommand) && matches(primary) && isSameCommand(primary, resolved, commandMap)) {
+                return !whitelist;
+            }
+        }
+
+        return whitelist;
+    }
+
+    /**
+     * Checks whether a name derived from the typed label stands for the typed command.
+     * A blacklist may block a bit more than typed, but a whitelist must not allow
+     * /otherplugin:home just because /home is allowed.
+     */
+    private boolean isSameCommand(String name, Command resolved, CommandMap commandMap) {
+        if (!whitelist) return true;
+        return resolved != null && commandMap.getCommand(name) == resolved;
+    }
+
+    private boolean matches(String command) {
+        if (exactCommands.contains(command)) {
+            return true;
+        }
+
+        TrieNode node = prefixRoot;
+        for (int i = 0; ; i++) {
+            if (node.terminal) {
+                return true;
+            }
+            if (i == command.length()) {
+                return false;
+            }
+            node = node.children.get(command.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+    }
+
+    private static String normalize(String command) {
+        return command.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,145 @@
+package dev.nighter.celestCombat.combat;
+
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * A fixed-capacity record of the players that recently damaged a victim.
+ *
+ * Each attacker occupies one slot holding their accumulated damage and the time
+ * of their latest hit, stored in parallel primitive arrays. Repeated hits from the
+ * same attacker update their slot in place, and a new attacker evicts the one whose
+ * latest hit is the oldest once every slot is taken, so memory per victim stays
+ * constant no matter how many players join the fight.
+ */
+public class DamageLedger {
+    private final long[] attackerMost;
+    private final long[] attackerLeast;
+    private final double[] damage;
+    private final long[] hitTime;
+    private int size;
+    private long lastHitTime;
+
+    /**
+     * Creates a new ledger
+     *
+     * @param capacity The maximum number of attackers remembered
+     */
+    public DamageLedger(int capacity) {
+        int slots = Math.max(1, capacity);
+        this.attackerMost = new long[slots];
+        this.attackerLeast = new long[slots];
+        this.damage = new double[slots];
+        this.hitTime = new long[slots];
+    }
+
+    /**
+     * Records a hit on the victim
+     *
+     * @param attackerUUID The attacking player
+     * @param amount The damage dealt
+     * @param time The time of the hit in milliseconds
+     * @return The time of the previous hit from anyone, or 0 if this is the first one
+     */
+    public synchronized long record(UUID attackerUUID, double amount, long time) {
+        long most = attackerUUID.getMostSignificantBits();
+        long least = attackerUUID.getLeastSignificantBits();
+        long previousHitTime = lastHitTime;
+        lastHitTime = time;
+
+        int slot = indexOf(most, least);
+        if (slot < 0) {
+            if (size < hitTime.length) {
+                slot = size++;
+            } else {
+                slot = oldestSlot();
+            }
+            attackerMost[slot] = most;
+            attackerLeast[slot] = least;
+            damage[slot] = 0.0;
+        }
+
+        damage[slot] += Math.max(0.0, amount);
+        hitTime[slot] = time;
+        return previousHitTime;
+    }
+
+    /**
+     * Gets the time of the latest hit from any attacker, or 0 if there was none
+     */
+    public synchronized long getLastHitTime() {
+        return lastHitTime;
+    }
+
+    /**
+     * Takes a snapshot of the attackers that hit the victim since the given time,
+     * ordered by damage dealt, highest first
+     *
+     * @param since Only attackers whose latest hit is at or after this time are included
+     * @return The attackers with their share of the total damage in that window
+     */
+    public synchronized Contribution[] getContributions(long since) {
+        int count = 0;
+        double total = 0.0;
+        for (int i = 0; i < size; i++) {
+            if (hitTime[i] >= since) {
+                count++;
+                total += damage[i];
+            }
+        }
+
+        Contribution[] contributions = new Contribution[count];
+        int index = 0;
+        for (int i = 0; i < size; i++) {
+            if (hitTime[i] < since) continue;
+
+            double share = total > 0.0 ? damage[i] / total : 1.0 / count;
+            Contribution contribution = new Contribution(new UUID(attackerMost[i], attackerLeast[i]), damage[i], share);
+
+            // Insertion sort, there are never more entries than the capacity
+            int position = index++;
+            while (position > 0 && contributions[position - 1].damage < contribution.damage) {
+                contributions[position] = contributions[position - 1];
+                position--;
+            }
+            contributions[position] = contribution;
+        }
+        return contributions;
+    }
+
+    private int indexOf(long most, long least) {
+        for (int i = 0; i < size; i++) {
+            if (attackerMost[i] == most && attackerLeast[i] == least) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int oldestSlot() {
+        int oldest = 0;
+        for (int i = 1; i < size; i++) {
+            if (hitTime[i] < hitTime[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * One attacker's part in a victim's recent damage, the share is between 0 and 1
+     */
+    @Getter
+    public static class Contribution {
+        private final UUID attackerUUID;
+        private final double damage;
+        private final double share;
+
+        Contribution(UUID attackerUUID, double damage, double share) {
+            this.attackerUUID = attackerUUID;
+            this.damage = damage;
+            this.share = share;
+        }
+    }
+}
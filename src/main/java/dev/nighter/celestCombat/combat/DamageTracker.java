@@ -0,0 +1,110 @@
+package dev.nighter.celestCombat.combat;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The damage ledgers of recently hit players, expired through a time-ordered queue.
+ *
+ * A hit queues an expiry record only when it lands in a new bucket of the victim,
+ * so the queue holds at most one record per victim per bucket. Recording a hit
+ * never scans other players, and {@link #removeExpired(long)} stops at the first
+ * record that is still fresh.
+ */
+public class DamageTracker {
+    private static final long BUCKET_MILLIS = 1000L;
+
+    private final Map<UUID, DamageLedger> ledgers = new ConcurrentHashMap<>();
+    // Expiry records in insertion order, at most one per victim per bucket
+    private final Queue<DamageRecord> expiryQueue = new ConcurrentLinkedQueue<>();
+    private final int ledgerCapacity;
+    private final long expiryMillis;
+
+    private record DamageRecord(UUID victimUUID, long time) {}
+
+    /**
+     * Creates a new tracker
+     *
+     * @param ledgerCapacity The maximum number of attackers remembered per victim
+     * @param expiryMillis How long a victim is remembered after their latest hit
+     */
+    public DamageTracker(int ledgerCapacity, long expiryMillis) {
+        this.ledgerCapacity = ledgerCapacity;
+        this.expiryMillis = expiryMillis;
+    }
+
+    /**
+     * Records a hit on a victim
+     */
+    public void recordHit(UUID victimUUID, UUID attackerUUID, double damage, long time) {
+        DamageLedger ledger = ledgers.computeIfAbsent(victimUUID, uuid -> new DamageLedger(ledgerCapacity));
+        long previousTime = ledger.record(attackerUUID, damage, time);
+
+        // The cleanup may have dropped the ledger while it was still stale, before this hit landed.
+        // Hits on a victim run on the victim's thread, so only the cleanup races with this.
+        if (ledgers.get(victimUUID) != ledger && ledgers.putIfAbsent(victimUUID, ledger) == null) {
+            previousTime = 0L;
+        }
+
+        // Only queue a new expiry record when the hit lands in a new bucket
+        if (previousTime == 0L || previousTime / BUCKET_MILLIS != time / BUCKET_MILLIS) {
+            expiryQueue.offer(new DamageRecord(victimUUID, time));
+        }
+    }
+
+    /**
+     * Forgets the victims whose latest hit is older than the expiry time
+     *
+     * @return The number of ledgers removed
+     */
+    public int removeExpired(long currentTime) {
+        long cutoff = currentTime - expiryMillis;
+        int removed = 0;
+
+        // The queue is ordered by time, so stop at the first record that is still fresh
+        DamageRecord record;
+        while ((record = expiryQueue.peek()) != null && record.time() < cutoff) {
+            expiryQueue.poll();
+
+            DamageLedger ledger = ledgers.get(record.victimUUID());
+            if (ledger == null) {
+                continue; // Already removed by death or join
+            }
+
+            long lastTime = ledger.getLastHitTime();
+            if (lastTime < cutoff) {
+                // Check again under the map lock, a hit may have landed since the read above
+                DamageLedger kept = ledgers.computeIfPresent(record.victimUUID(),
+                        (uuid, current) -> current == ledger && current.getLastHitTime() < cutoff ? null : current);
+                if (kept == null) {
+                    removed++;
+                }
+            } else if (lastTime / BUCKET_MILLIS == record.time() / BUCKET_MILLIS) {
+                // Hit again in the same bucket, no newer record was queued so track the latest hit
+                expiryQueue.offer(new DamageRecord(record.victimUUID(), lastTime));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the ledger of a player, their expiry records are skipped when drained
+     *
+     * @return The removed ledger, or null if the player was not hit recently
+     */
+    public DamageLedger remove(UUID playerUUID) {
+        return ledgers.remove(playerUUID);
+    }
+
+    public int size() {
+        return ledgers.size();
+    }
+
+    public void clear() {
+        ledgers.clear();
+        expiryQueue.clear();
+    }
+}
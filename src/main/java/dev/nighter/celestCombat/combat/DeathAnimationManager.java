@@ -2,6 +2,7 @@ package dev.nighter.celestCombat.combat;
 
 import dev.nighter.celestCombat.CelestCombat;
 import dev.nighter.celestCombat.Scheduler;
+import dev.nighter.celestCombat.configs.CombatConfig;
 import org.bukkit.Location;
 import org.bukkit.Particle;
 import org.bukkit.Sound;
@@ -22,12 +23,13 @@ public class DeathAnimationManager {
 
     public void performDeathAnimation(Player victim, Player killer) {
         // Check if death animations are enabled
-        if (!plugin.getConfig().getBoolean("death_animation.enabled", true)) {
+        CombatConfig.DeathAnimation settings = plugin.getCombatConfig().deathAnimation();
+        if (!settings.enabled()) {
             return;
         }
 
         // Check if the death was by another player
-        if (killer == null && plugin.getConfig().getBoolean("death_animation.only_player_kill", true)) {
+        if (killer == null && settings.onlyPlayerKill()) {
             return;
         }
 
@@ -40,10 +42,10 @@ public class DeathAnimationManager {
         List<String> availableAnimations = new ArrayList<>();
 
         // Check each animation type
-        if (plugin.getConfig().getBoolean("death_animation.animation.lightning", true)) {
+        if (settings.lightning()) {
             availableAnimations.add("lightning");
         }
-        if (plugin.getConfig().getBoolean("death_animation.animation.fire_particles", true)) {
+        if (settings.fireParticles()) {
             availableAnimations.add("fire_particles");
         }
 
@@ -0,0 +1,72 @@
+package dev.nighter.celestCombat.combat;
+
+import lombok.Getter;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+
+/**
+ * Per-player combat state, created when the player joins and dropped when they quit.
+ *
+ * All end times are absolute epoch milliseconds, 0 means "not set".
+ * Mutators are package-private so only {@link CombatManager} can change the state,
+ * everything else gets a read-only view.
+ */
+@Getter
+public class PlayerCombatSession {
+    private final UUID playerUUID;
+    private final Player player;
+
+    private volatile long combatEndTime;
+    private volatile UUID opponentUUID;
+    private volatile long enderPearlCooldownEnd;
+    private volatile long tridentCooldownEnd;
+
+    PlayerCombatSession(Player player) {
+        this.playerUUID = player.getUniqueId();
+        this.player = player;
+    }
+
+    /**
+     * Whether the player currently carries a combat tag, even one that is
+     * past its end time but not yet removed by the countdown task
+     */
+    public boolean isTagged() {
+        return combatEndTime != 0L;
+    }
+
+    public boolean isInCombat(long currentTime) {
+        long endTime = combatEndTime;
+        return endTime != 0L && currentTime <= endTime;
+    }
+
+    public boolean hasEnderPearlCooldown(long currentTime) {
+        return currentTime <= enderPearlCooldownEnd;
+    }
+
+    public boolean hasTridentCooldown(long currentTime) {
+        return currentTime <= tridentCooldownEnd;
+    }
+
+    void setCombat(long endTime, UUID opponentUUID) {
+        this.opponentUUID = opponentUUID;
+        this.combatEndTime = endTime;
+    }
+
+    void setCombatEndTime(long endTime) {
+        this.combatEndTime = endTime;
+    }
+
+    void clearCombat() {
+        this.combatEndTime = 0L;
+        this.opponentUUID = null;
+    }
+
+    void setEnderPearlCooldownEnd(long endTime) {
+        this.enderPearlCooldownEnd = endTime;
+    }
+
+    void setTridentCooldownEnd(long endTime) {
+        this.tridentCooldownEnd = endTime;
+    }
+}
@@ -137,18 +137,15 @@ public class KillRewardCommand extends BaseCommand {
             return true;
         }
 
-        // Get the size before clearing for logging
-        int cooldownCount = plugin.getKillRewardManager().getKillRewardCooldowns().size();
+        // Clear all kill reward cooldowns, stored ones of offline players are not counted
+        int cooldownCount = plugin.getKillRewardManager().clearAllCooldowns();
 
-        // Check if there are any cooldowns to clear
+        // Check if there were any cooldowns to clear
         if (cooldownCount == 0) {
             messageService.sendMessage(sender, "no_cooldowns_to_clear", placeholders);
             return true;
         }
 
-        // Clear all kill reward cooldowns
-        plugin.getKillRewardManager().getKillRewardCooldowns().clear();
-
         // Send success message
         placeholders.put("count", String.valueOf(cooldownCount));
         messageService.sendMessage(sender, "clear_all_cooldowns_success", placeholders);
@@ -37,8 +37,8 @@ public class ReloadCommand extends BaseCommand {
             plugin.getGriefPreventionHook().reloadConfig();
         }
 
-        // Reload combat manager configuration
-        plugin.getCombatManager().reloadConfig();
+        // Swap in the new combat configuration
+        plugin.reloadCombatConfig();
         plugin.getKillRewardManager().loadConfig();
         plugin.getNewbieProtectionManager().reloadConfig();
         plugin.getCombatListeners().reload();
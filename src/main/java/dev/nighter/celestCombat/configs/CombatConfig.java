@@ -0,0 +1,192 @@
+package dev.nighter.celestCombat.configs;
+
+import dev.nighter.celestCombat.CelestCombat;
+import dev.nighter.celestCombat.combat.CommandBlockMatcher;
+import org.bukkit.Material;
+import org.bukkit.Registry;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the combat settings in config.yml.
+ *
+ * Built once on enable and on every reload, then published through a single
+ * volatile reference on the plugin, so event handlers never touch the YAML tree
+ * and always see one consistent version of the config.
+ */
+public record CombatConfig(
+        Combat combat,
+        Cooldown enderPearl,
+        Cooldown trident,
+        Set<String> tridentBannedWorlds,
+        ItemRestrictions itemRestrictions,
+        DeathAnimation deathAnimation) {
+
+    public record Combat(
+            long durationMillis,
+            boolean disableFlight,
+            boolean exemptAdminKick,
+            CommandBlockMatcher commandBlockMatcher) {
+    }
+
+    public record Cooldown(
+            boolean enabled,
+            long durationMillis,
+            boolean inCombatOnly,
+            boolean refreshCombatOnLand,
+            Map<String, Boolean> worlds) {
+
+        /**
+         * Whether the cooldown applies in a world, worlds not listed use the global toggle
+         */
+        public boolean isEnabledIn(String worldName) {
+            return enabled && worlds.getOrDefault(worldName, true);
+        }
+    }
+
+    public record ItemRestrictions(
+            boolean enabled,
+            Set<Material> disabledItems,
+            Set<PotionEffectType> disabledPotionEffects) {
+
+        public boolean isDisabled(Material material) {
+            return enabled && disabledItems.contains(material);
+        }
+
+        public boolean isDisabled(PotionEffectType effectType) {
+            return enabled && disabledPotionEffects.contains(effectType);
+        }
+    }
+
+    public record DeathAnimation(boolean enabled, boolean onlyPlayerKill, boolean lightning, boolean fireParticles) {
+    }
+
+    public boolean isTridentBanned(String worldName) {
+        return tridentBannedWorlds.contains(worldName);
+    }
+
+    /**
+     * Parses the current plugin config into a new snapshot
+     */
+    public static CombatConfig load(CelestCombat plugin) {
+        FileConfiguration config = plugin.getConfig();
+
+        Combat combat = new Combat(
+                secondsToMillis(plugin.getTimeFromConfig("combat.duration", "20s")),
+                config.getBoolean("combat.disable_flight", true),
+                config.getBoolean("combat.exempt_admin_kick", true),
+                loadCommandBlockMatcher(config));
+
+        Cooldown enderPearl = new Cooldown(
+                config.getBoolean("enderpearl_cooldown.enabled", true),
+                secondsToMillis(plugin.getTimeFromConfig("enderpearl_cooldown.duration", "10s")),
+                config.getBoolean("enderpearl_cooldown.in_combat_only", true),
+                config.getBoolean("enderpearl.refresh_combat_on_land", false),
+                loadWorldToggles(config, "enderpearl_cooldown.worlds", true));
+
+        Cooldown trident = new Cooldown(
+                config.getBoolean("trident_cooldown.enabled", true),
+                secondsToMillis(plugin.getTimeFromConfig("trident_cooldown.duration", "10s")),
+                config.getBoolean("trident_cooldown.in_combat_only", true),
+                config.getBoolean("trident.refresh_combat_on_land", false),
+                loadWorldToggles(config, "trident_cooldown.worlds", true));
+
+        Set<String> tridentBannedWorlds = new HashSet<>();
+        loadWorldToggles(config, "trident.banned_worlds", false).forEach((worldName, banned) -> {
+            if (banned) {
+                tridentBannedWorlds.add(worldName);
+            }
+        });
+
+        ItemRestrictions itemRestrictions = loadItemRestrictions(plugin, config);
+
+        DeathAnimation deathAnimation = new DeathAnimation(
+                config.getBoolean("death_animation.enabled", true),
+                config.getBoolean("death_animation.only_player_kill", true),
+                config.getBoolean("death_animation.animation.lightning", true),
+                config.getBoolean("death_animation.animation.fire_particles", true));
+
+        return new CombatConfig(combat, enderPearl, trident, Collections.unmodifiableSet(tridentBannedWorlds),
+                itemRestrictions, deathAnimation);
+    }
+
+    private static long secondsToMillis(long ticks) {
+        // Durations are shown and applied in whole seconds
+        return (ticks / 20) * 1000L;
+    }
+
+    private static CommandBlockMatcher loadCommandBlockMatcher(FileConfiguration config) {
+        String blockMode = config.getString("combat.command_block_mode", "whitelist");
+
+        if ("blacklist".equalsIgnoreCase(blockMode)) {
+            // Blacklist mode - block commands in the list
+            return CommandBlockMatcher.compile(false, config.getStringList("combat.blocked_commands"));
+        }
+
+        // Whitelist mode - allow only commands in the list
+        return CommandBlockMatcher.compile(true, config.getStringList("combat.allowed_commands"));
+    }
+
+    private static ItemRestrictions loadItemRestrictions(CelestCombat plugin, FileConfiguration config) {
+        Set<Material> disabledItems = EnumSet.noneOf(Material.class);
+        Set<PotionEffectType> disabledPotionEffects = new HashSet<>();
+
+        for (String entry : config.getStringList("combat.item_restrictions.disabled_items")) {
+            String item = entry.trim();
+            if (item.isEmpty()) continue;
+
+            // POTION:<effect> blocks every potion that carries the effect
+            if (item.regionMatches(true, 0, "POTION:", 0, 7)) {
+                PotionEffectType effectType = Registry.EFFECT.match(item.substring(7).trim());
+                if (effectType != null) {
+                    disabledPotionEffects.add(effectType);
+                } else {
+                    plugin.getLogger().warning("Unknown potion effect in combat.item_restrictions.disabled_items: " + item);
+                }
+                continue;
+            }
+
+            // Same matching as before, exact name or part of the name, resolved once here
+            boolean matched = false;
+            for (Material material : Material.values()) {
+                String name = material.name();
+                if (name.startsWith("LEGACY_")) continue;
+
+                if (name.equalsIgnoreCase(item) || name.contains(item)) {
+                    disabledItems.add(material);
+                    matched = true;
+                }
+            }
+
+            if (!matched) {
+                plugin.getLogger().warning("Unknown item in combat.item_restrictions.disabled_items: " + item);
+            }
+        }
+
+        return new ItemRestrictions(
+                config.getBoolean("combat.item_restrictions.enabled", true),
+                Collections.unmodifiableSet(disabledItems),
+                Collections.unmodifiableSet(disabledPotionEffects));
+    }
+
+    private static Map<String, Boolean> loadWorldToggles(FileConfiguration config, String path, boolean defaultValue) {
+        Map<String, Boolean> toggles = new HashMap<>();
+
+        ConfigurationSection section = config.getConfigurationSection(path);
+        if (section != null) {
+            for (String worldName : section.getKeys(false)) {
+                toggles.put(worldName, section.getBoolean(worldName, defaultValue));
+            }
+        }
+
+        return Collections.unmodifiableMap(toggles);
+    }
+}
@@ -0,0 +1,32 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import dev.nighter.celestCombat.CelestCombat;
+
+/**
+ * How barriers around protected areas are shown to players in combat
+ */
+public enum BarrierRenderMode {
+    // Fake blocks along the border
+    BLOCKS,
+    // A client-side world border along rectangular areas, fake blocks elsewhere
+    WORLD_BORDER;
+
+    /**
+     * Loads the render mode from config
+     *
+     * @param path Path of the option, for example "safezone_protection.barrier_render_mode"
+     */
+    public static BarrierRenderMode load(CelestCombat plugin, String path) {
+        String modeName = plugin.getConfig().getString(path, "blocks");
+
+        try {
+            BarrierRenderMode mode = valueOf(modeName.toUpperCase());
+            plugin.debug("Using barrier render mode: " + mode.name() + " for " + path);
+            return mode;
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Invalid barrier render mode '" + modeName + "' at " + path + ". Using BLOCKS instead.");
+            plugin.getLogger().warning("Valid render modes are: blocks, world_border");
+            return BLOCKS;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * The area around a player in which barrier blocks are shown.
+ *
+ * The area is a cylinder of a fixed radius around the player's block, from a few
+ * blocks below to a few blocks above it. When the player moves, {@link #moveTo}
+ * walks the window row by row and only reports the blocks that left or entered
+ * it, so a one-block step touches the leading and trailing edge of the window
+ * rather than its whole volume. Sliding walks every row between the old and the new
+ * centre, so after a teleport the window is {@link #recenter recentred} and refilled
+ * instead.
+ */
+public class BarrierWindow {
+    @Getter
+    private final UUID worldId;
+    @Getter
+    private final int radius;
+    private final int belowOffset;
+    private final int aboveOffset;
+    // Half width of the row at each z offset from the centre
+    private final int[] rowHalfWidths;
+
+    @Getter
+    private int centerX;
+    @Getter
+    private int centerY;
+    @Getter
+    private int centerZ;
+    @Getter
+    private long lastFullRefresh;
+
+    public interface BlockVisitor {
+        void visit(int x, int y, int z);
+    }
+
+    /**
+     * Creates a window centred on a block
+     *
+     * @param belowOffset How many blocks below the player the window reaches
+     * @param aboveOffset How many blocks above the player the window reaches
+     */
+    public BarrierWindow(UUID worldId, int radius, int belowOffset, int aboveOffset,
+                         int centerX, int centerY, int centerZ) {
+        this.worldId = worldId;
+        this.radius = radius;
+        this.belowOffset = belowOffset;
+        this.aboveOffset = aboveOffset;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.centerZ = centerZ;
+
+        this.rowHalfWidths = new int[radius * 2 + 1];
+        for (int dz = -radius; dz <= radius; dz++) {
+            rowHalfWidths[dz + radius] = (int) Math.floor(Math.sqrt((double) radius * radius - dz * dz));
+        }
+    }
+
+    public boolean matches(UUID worldId, int radius, int belowOffset, int aboveOffset) {
+        return this.worldId.equals(worldId) && this.radius == radius
+                && this.belowOffset == belowOffset && this.aboveOffset == aboveOffset;
+    }
+
+    /**
+     * Visits every block inside the window
+     */
+    public void forEachBlock(BlockVisitor visitor) {
+        for (int y = centerY - belowOffset; y <= centerY + aboveOffset; y++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                int halfWidth = rowHalfWidths[dz + radius];
+                for (int x = centerX - halfWidth; x <= centerX + halfWidth; x++) {
+                    visitor.visit(x, y, centerZ + dz);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True if the window centred on the block would share no block with this one
+     */
+    public boolean isDisjointFrom(int x, int y, int z) {
+        return Math.abs(x - centerX) > radius * 2 || Math.abs(z - centerZ) > radius * 2
+                || Math.abs(y - centerY) > belowOffset + aboveOffset;
+    }
+
+    /**
+     * Moves the window to a new centre without reporting any block, for callers that
+     * refill the whole window afterwards
+     */
+    public void recenter(int x, int y, int z) {
+        centerX = x;
+        centerY = y;
+        centerZ = z;
+    }
+
+    /**
+     * Moves the window to a new centre, walking the rows between both centres
+     *
+     * @param left Receives the blocks that are no longer inside the window
+     * @param entered Receives the blocks that are now inside the window
+     */
+    public void moveTo(int x, int y, int z, BlockVisitor left, BlockVisitor entered) {
+        int oldX = centerX;
+        int oldY = centerY;
+        int oldZ = centerZ;
+        if (oldX == x && oldY == y && oldZ == z) return;
+
+        centerX = x;
+        centerY = y;
+        centerZ = z;
+
+        int minY = Math.min(oldY, y) - belowOffset;
+        int maxY = Math.max(oldY, y) + aboveOffset;
+        int minZ = Math.min(oldZ, z) - radius;
+        int maxZ = Math.max(oldZ, z) + radius;
+
+        for (int rowY = minY; rowY <= maxY; rowY++) {
+            for (int rowZ = minZ; rowZ <= maxZ; rowZ++) {
+                int oldHalfWidth = halfWidth(oldY, oldZ, rowY, rowZ);
+                int newHalfWidth = halfWidth(y, z, rowY, rowZ);
+
+                visitDifference(oldX, oldHalfWidth, x, newHalfWidth, rowY, rowZ, left);
+                visitDifference(x, newHalfWidth, oldX, oldHalfWidth, rowY, rowZ, entered);
+            }
+        }
+    }
+
+    public void markFullRefresh(long time) {
+        lastFullRefresh = time;
+    }
+
+    // Half width of a row for a window centred at (centerY, centerZ), or -1 if the row is outside it
+    private int halfWidth(int centerY, int centerZ, int rowY, int rowZ) {
+        if (rowY < centerY - belowOffset || rowY > centerY + aboveOffset) return -1;
+
+        int dz = rowZ - centerZ;
+        if (dz < -radius || dz > radius) return -1;
+        return rowHalfWidths[dz + radius];
+    }
+
+    // Visits the blocks of row a that are not in row b
+    private static void visitDifference(int aCenter, int aHalfWidth, int bCenter, int bHalfWidth,
+                                        int y, int z, BlockVisitor visitor) {
+        if (aHalfWidth < 0) return;
+
+        int aMin = aCenter - aHalfWidth;
+        int aMax = aCenter + aHalfWidth;
+        if (bHalfWidth < 0) {
+            for (int x = aMin; x <= aMax; x++) visitor.visit(x, y, z);
+            return;
+        }
+
+        int bMin = bCenter - bHalfWidth;
+        int bMax = bCenter + bHalfWidth;
+        for (int x = aMin; x <= Math.min(aMax, bMin - 1); x++) visitor.visit(x, y, z);
+        for (int x = Math.max(aMin, bMax + 1); x <= aMax; x++) visitor.visit(x, y, z);
+    }
+}
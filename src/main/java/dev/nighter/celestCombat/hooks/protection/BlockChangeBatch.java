@@ -0,0 +1,41 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import io.papermc.paper.math.Position;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects fake block changes for one player and sends them together.
+ *
+ * Paper splits a multi-block change into one packet per chunk section, so a
+ * whole barrier wall costs a handful of packets instead of one per block.
+ */
+public class BlockChangeBatch {
+    // Block data is never modified after creation, so one instance per material is shared
+    private static final Map<Material, BlockData> BLOCK_DATA = new ConcurrentHashMap<>();
+
+    private final Map<Position, BlockData> changes = new HashMap<>();
+
+    public static BlockData blockData(Material material) {
+        return BLOCK_DATA.computeIfAbsent(material, Material::createBlockData);
+    }
+
+    public void add(int x, int y, int z, Material material) {
+        changes.put(Position.block(x, y, z), blockData(material));
+    }
+
+    /**
+     * Sends the collected changes to the player and empties the batch
+     */
+    public void send(Player player) {
+        if (changes.isEmpty()) return;
+
+        player.sendMultiBlockChange(changes);
+        changes.clear();
+    }
+}
@@ -0,0 +1,29 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+/**
+ * Packs block coordinates into a single long, using the same layout as
+ * Minecraft's BlockPos: 26 bits of x, 26 bits of z and 12 bits of y.
+ *
+ * A packed key carries no world, so every collection of keys covers a single world.
+ */
+public final class BlockKeys {
+
+    private BlockKeys() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFFL);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> 38);
+    }
+
+    public static int unpackY(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    public static int unpackZ(long key) {
+        return (int) (key << 26 >> 38);
+    }
+}
@@ -0,0 +1,131 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import me.ryanhamshire.GriefPrevention.Claim;
+import me.ryanhamshire.GriefPrevention.GriefPrevention;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GriefPrevention claims per chunk, built from GriefPrevention's own chunk lookup.
+ *
+ * The bounds of each claim are read once, so finding the claim at a block is a
+ * few integer comparisons against the claims of its chunk instead of a data store
+ * lookup with a new location. Chunks are dropped when they unload, and the chunks
+ * under a claim when its bounds change.
+ */
+public class ClaimIndex {
+    private static final ClaimBounds[] NO_CLAIMS = new ClaimBounds[0];
+
+    private final Map<UUID, Map<Long, ClaimBounds[]>> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * A top level claim and its block bounds, it reaches up to the top of the world
+     */
+    public record ClaimBounds(Claim claim, UUID worldId, int minX, int minY, int minZ, int maxX, int maxZ) {
+        public boolean contains(UUID worldId, int x, int y, int z) {
+            return x >= minX && x <= maxX && z >= minZ && z <= maxZ && y >= minY && this.worldId.equals(worldId);
+        }
+
+        /**
+         * @return The subdivision containing the block, or the claim itself
+         */
+        public Claim claimAt(World world, int x, int y, int z) {
+            if (claim.children.isEmpty()) return claim;
+
+            Location location = new Location(world, x, y, z);
+            for (Claim child : claim.children) {
+                if (child.contains(location, false, false)) return child;
+            }
+            return claim;
+        }
+    }
+
+    /**
+     * @return The claims touching a chunk, indexing it first if needed
+     */
+    public ClaimBounds[] getClaims(World world, int chunkX, int chunkZ) {
+        Map<Long, ClaimBounds[]> chunks = worlds.computeIfAbsent(world.getUID(), worldId -> new ConcurrentHashMap<>());
+        return chunks.computeIfAbsent(chunkKey(chunkX, chunkZ), key -> buildChunk(world, chunkX, chunkZ));
+    }
+
+    /**
+     * @return The top level claim containing a block, or null
+     */
+    public ClaimBounds findClaim(World world, int x, int y, int z) {
+        UUID worldId = world.getUID();
+        for (ClaimBounds bounds : getClaims(world, x >> 4, z >> 4)) {
+            if (bounds.contains(worldId, x, y, z)) return bounds;
+        }
+        return null;
+    }
+
+    public void unloadChunk(World world, int chunkX, int chunkZ) {
+        Map<Long, ClaimBounds[]> chunks = worlds.get(world.getUID());
+        if (chunks != null) {
+            chunks.remove(chunkKey(chunkX, chunkZ));
+        }
+    }
+
+    /**
+     * Drops the indexed chunks under an area of blocks, they are indexed again when queried
+     */
+    public void invalidate(Location lesser, Location greater) {
+        World world = lesser.getWorld();
+        Map<Long, ClaimBounds[]> chunks = world == null ? null : worlds.get(world.getUID());
+        if (chunks == null) return;
+
+        int minChunkX = Math.min(lesser.getBlockX(), greater.getBlockX()) >> 4;
+        int minChunkZ = Math.min(lesser.getBlockZ(), greater.getBlockZ()) >> 4;
+        int maxChunkX = Math.max(lesser.getBlockX(), greater.getBlockX()) >> 4;
+        int maxChunkZ = Math.max(lesser.getBlockZ(), greater.getBlockZ()) >> 4;
+
+        // Walk whichever is smaller, the chunks under the area or the indexed ones
+        long area = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+        if (area <= chunks.size()) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    chunks.remove(chunkKey(chunkX, chunkZ));
+                }
+            }
+            return;
+        }
+
+        chunks.keySet().removeIf(key -> {
+            int chunkX = (int) (key >> 32);
+            int chunkZ = (int) (long) key;
+            return chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ;
+        });
+    }
+
+    public void unloadWorld(World world) {
+        worlds.remove(world.getUID());
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+
+    private static ClaimBounds[] buildChunk(World world, int chunkX, int chunkZ) {
+        // GriefPrevention keys its chunk lists without the world
+        List<ClaimBounds> claims = new ArrayList<>();
+        for (Claim claim : GriefPrevention.instance.dataStore.getClaims(chunkX, chunkZ)) {
+            Location lesser = claim.getLesserBoundaryCorner();
+            Location greater = claim.getGreaterBoundaryCorner();
+            if (!claim.inDataStore || !world.equals(lesser.getWorld())) continue;
+
+            claims.add(new ClaimBounds(claim, world.getUID(), lesser.getBlockX(), lesser.getBlockY(), lesser.getBlockZ(),
+                    greater.getBlockX(), greater.getBlockZ()));
+        }
+        return claims.isEmpty() ? NO_CLAIMS : claims.toArray(new ClaimBounds[0]);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
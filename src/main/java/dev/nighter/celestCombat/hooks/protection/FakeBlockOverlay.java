@@ -0,0 +1,284 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import dev.nighter.celestCombat.CelestCombat;
+import io.papermc.paper.event.packet.PlayerChunkLoadEvent;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fake blocks shown to individual players, shared by the protection hooks.
+ *
+ * Each hook registers a layer and only decides which blocks should be shown. The
+ * overlay keeps one record per viewer keyed by packed block coordinates, remembers
+ * the real block under every fake one and sends all packets: placing and restoring
+ * blocks, re-sending them when the server resends a chunk, and restoring them on
+ * quit, world change and shutdown. Two layers can show the same block, it is only
+ * restored once neither wants it anymore.
+ *
+ * A viewer's record is only touched while holding its lock, so the player's region
+ * thread and the async cleanup tasks never race on it.
+ */
+public class FakeBlockOverlay implements Listener {
+    private static final Material[] MATERIALS = Material.values();
+    private static final int MAX_LAYERS = 8;
+    private static final long MISSING = -1L;
+
+    private final CelestCombat plugin;
+    private final Map<UUID, ViewerState> viewers = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLayer = new AtomicInteger();
+
+    private static class ViewerState {
+        final UUID worldId;
+        // Per block: real material in bits 0-15, fake material in bits 16-31, layers in bits 32-39
+        final PackedBlockMap blocks = new PackedBlockMap();
+
+        ViewerState(UUID worldId) {
+            this.worldId = worldId;
+        }
+    }
+
+    public FakeBlockOverlay(CelestCombat plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Reserves a layer for one source of fake blocks
+     */
+    public int registerLayer() {
+        int layer = nextLayer.getAndIncrement();
+        if (layer >= MAX_LAYERS) {
+            throw new IllegalStateException("Too many fake block layers");
+        }
+        return layer;
+    }
+
+    /**
+     * Shows a fake block to a player. Reads the real block, so this must run on
+     * the thread that owns it. Solid blocks are never replaced.
+     *
+     * @return True if the block is now shown for the layer
+     */
+    public boolean show(Player viewer, int layer, World world, int x, int y, int z,
+                        Material material, BlockChangeBatch changes) {
+        ViewerState state = getState(viewer, world);
+        long key = BlockKeys.pack(x, y, z);
+
+        synchronized (state) {
+            long value = state.blocks.get(key, MISSING);
+            if (value != MISSING) {
+                state.blocks.put(key, value | layerBit(layer));
+                return true;
+            }
+
+            Material realType = world.getType(x, y, z);
+            if (realType != Material.AIR && realType.isSolid()) return false;
+
+            state.blocks.put(key, realType.ordinal() | ((long) material.ordinal() << 16) | layerBit(layer));
+            changes.add(x, y, z, material);
+            return true;
+        }
+    }
+
+    /**
+     * Stops showing a fake block for a layer, restoring the real block if no other layer shows it
+     */
+    public void hide(Player viewer, int layer, World world, int x, int y, int z, BlockChangeBatch changes) {
+        ViewerState state = viewers.get(viewer.getUniqueId());
+        if (state == null || !state.worldId.equals(world.getUID())) return;
+
+        synchronized (state) {
+            hide(state, layer, BlockKeys.pack(x, y, z), changes);
+        }
+    }
+
+    /**
+     * Makes a layer show exactly the given blocks, hiding the ones it showed before that are not in the set
+     */
+    public void replaceLayer(Player viewer, int layer, World world, PackedBlockSet blocks,
+                             Material material, BlockChangeBatch changes) {
+        ViewerState state = getState(viewer, world);
+
+        synchronized (state) {
+            PackedBlockSet stale = new PackedBlockSet();
+            state.blocks.forEach((key, value) -> {
+                if ((value & layerBit(layer)) != 0 && !blocks.contains(key)) {
+                    stale.add(key);
+                }
+            });
+            stale.forEach(key -> hide(state, layer, key, changes));
+        }
+
+        blocks.forEach(key -> show(viewer, layer, world, BlockKeys.unpackX(key),
+                BlockKeys.unpackY(key), BlockKeys.unpackZ(key), material, changes));
+    }
+
+    /**
+     * Hides every block of a layer for a player and sends the restores right away.
+     * Only sends packets, so it can be called from any thread.
+     */
+    public void clearLayer(Player viewer, int layer) {
+        ViewerState state = viewers.get(viewer.getUniqueId());
+        if (state == null) return;
+
+        BlockChangeBatch changes = new BlockChangeBatch();
+        clearLayer(state, layer, changes);
+        changes.send(viewer);
+    }
+
+    /**
+     * Hides every block of a layer for all players
+     */
+    public void clearLayer(int layer) {
+        for (Map.Entry<UUID, ViewerState> entry : viewers.entrySet()) {
+            BlockChangeBatch changes = new BlockChangeBatch();
+            clearLayer(entry.getValue(), layer, changes);
+
+            Player player = plugin.getServer().getPlayer(entry.getKey());
+            if (player != null && player.isOnline()) {
+                changes.send(player);
+            }
+        }
+    }
+
+    public boolean isShown(Player viewer, int layer, Location location) {
+        ViewerState state = viewers.get(viewer.getUniqueId());
+        if (state == null || !state.worldId.equals(location.getWorld().getUID())) return false;
+
+        long key = BlockKeys.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        synchronized (state) {
+            long value = state.blocks.get(key, MISSING);
+            return value != MISSING && (value & layerBit(layer)) != 0;
+        }
+    }
+
+    /**
+     * Sends a fake block again, in case the client replaced it
+     */
+    public void refresh(Player viewer, Location location) {
+        ViewerState state = viewers.get(viewer.getUniqueId());
+        if (state == null || !state.worldId.equals(location.getWorld().getUID())) return;
+
+        long key = BlockKeys.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        long value;
+        synchronized (state) {
+            value = state.blocks.get(key, MISSING);
+        }
+        if (value != MISSING) {
+            viewer.sendBlockChange(location, BlockChangeBatch.blockData(fakeType(value)));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChunkLoad(PlayerChunkLoadEvent event) {
+        Player player = event.getPlayer();
+        ViewerState state = viewers.get(player.getUniqueId());
+        if (state == null) return;
+
+        Chunk chunk = event.getChunk();
+        if (!state.worldId.equals(chunk.getWorld().getUID())) return;
+
+        // The chunk packet replaced the fake blocks in it, send them again
+        int chunkX = chunk.getX();
+        int chunkZ = chunk.getZ();
+        BlockChangeBatch changes = new BlockChangeBatch();
+        synchronized (state) {
+            state.blocks.forEach((key, value) -> {
+                int x = BlockKeys.unpackX(key);
+                int z = BlockKeys.unpackZ(key);
+                if (x >> 4 == chunkX && z >> 4 == chunkZ) {
+                    changes.add(x, BlockKeys.unpackY(key), z, fakeType(value));
+                }
+            });
+        }
+        changes.send(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        // The client dropped the old world along with its fake blocks
+        viewers.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        viewers.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Restores the real blocks for every viewer
+     */
+    public void shutdown() {
+        for (Map.Entry<UUID, ViewerState> entry : viewers.entrySet()) {
+            Player player = plugin.getServer().getPlayer(entry.getKey());
+            if (player == null || !player.isOnline()) continue;
+
+            BlockChangeBatch changes = new BlockChangeBatch();
+            ViewerState state = entry.getValue();
+            synchronized (state) {
+                state.blocks.forEach((key, value) -> changes.add(BlockKeys.unpackX(key),
+                        BlockKeys.unpackY(key), BlockKeys.unpackZ(key), realType(value)));
+            }
+            changes.send(player);
+        }
+        viewers.clear();
+    }
+
+    private ViewerState getState(Player viewer, World world) {
+        UUID worldId = world.getUID();
+        // A record from another world is stale, the client no longer has those blocks
+        return viewers.compute(viewer.getUniqueId(), (uuid, state) ->
+                state != null && state.worldId.equals(worldId) ? state : new ViewerState(worldId));
+    }
+
+    private void clearLayer(ViewerState state, int layer, BlockChangeBatch changes) {
+        synchronized (state) {
+            PackedBlockSet layerBlocks = new PackedBlockSet();
+            state.blocks.forEach((key, value) -> {
+                if ((value & layerBit(layer)) != 0) {
+                    layerBlocks.add(key);
+                }
+            });
+            layerBlocks.forEach(key -> hide(state, layer, key, changes));
+        }
+    }
+
+    // Caller holds the state lock
+    private void hide(ViewerState state, int layer, long key, BlockChangeBatch changes) {
+        long value = state.blocks.get(key, MISSING);
+        if (value == MISSING || (value & layerBit(layer)) == 0) return;
+
+        long remaining = value & ~layerBit(layer);
+        if ((remaining >>> 32) != 0) {
+            state.blocks.put(key, remaining);
+            return;
+        }
+
+        state.blocks.remove(key);
+        changes.add(BlockKeys.unpackX(key), BlockKeys.unpackY(key), BlockKeys.unpackZ(key), realType(value));
+    }
+
+    private static long layerBit(int layer) {
+        return 1L << (32 + layer);
+    }
+
+    private static Material realType(long value) {
+        return MATERIALS[(int) (value & 0xFFFF)];
+    }
+
+    private static Material fakeType(long value) {
+        return MATERIALS[(int) ((value >>> 16) & 0xFFFF)];
+    }
+}
@@ -3,9 +3,16 @@ package dev.nighter.celestCombat.hooks.protection;
 import dev.nighter.celestCombat.CelestCombat;
 import dev.nighter.celestCombat.Scheduler;
 import dev.nighter.celestCombat.combat.CombatManager;
+import dev.nighter.celestCombat.listeners.MovementConsumer;
+import dev.nighter.celestCombat.listeners.MovementContext;
 import me.ryanhamshire.GriefPrevention.Claim;
 import me.ryanhamshire.GriefPrevention.ClaimPermission;
-import me.ryanhamshire.GriefPrevention.GriefPrevention;
+import me.ryanhamshire.GriefPrevention.events.ClaimChangeEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimCreatedEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimExtendEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimTransferEvent;
+import me.ryanhamshire.GriefPrevention.events.TrustChangedEvent;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -17,15 +24,16 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.util.Vector;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
-public class GriefPreventionHook implements Listener {
+public class GriefPreventionHook implements Listener, MovementConsumer {
     private final CelestCombat plugin;
     private final CombatManager combatManager;
 
@@ -33,10 +41,11 @@ public class GriefPreventionHook implements Listener {
     private final Map<UUID, Long> lastMessageTime = new ConcurrentHashMap<>();
     private final long MESSAGE_COOLDOWN = 2000; // 2 seconds cooldown between messages
 
-    // Visual barrier system
-    private final Map<UUID, Set<Location>> playerBarriers = new ConcurrentHashMap<>();
-    private final Map<Location, Material> originalBlocks = new ConcurrentHashMap<>();
-    private final Map<Location, Set<UUID>> barrierViewers = new ConcurrentHashMap<>();
+    // Visual barrier system, the overlay owns the fake blocks
+    private final FakeBlockOverlay overlay;
+    private final int overlayLayer;
+    private final Set<UUID> barrierPlayers = ConcurrentHashMap.newKeySet();
+    private final WorldBorderBarrier worldBorderBarrier;
 
     // Configuration
     private boolean globalEnabled;
@@ -45,17 +54,35 @@ public class GriefPreventionHook implements Listener {
     private int barrierHeight;
     private Material barrierMaterial;
     private double pushBackForce;
+    private BarrierRenderMode renderMode;
 
     // Cache for performance optimization
     private ClaimPermission requiredPermission;
-    private final Map<String, Boolean> claimCache = new ConcurrentHashMap<>();
+    // Claims per chunk, shared by all players
+    private final ClaimIndex claimIndex = new ClaimIndex();
+    // Claim protection depends on the player, so each player caches their permission per claim
+    private final Map<UUID, PlayerClaimCache> claimCaches = new ConcurrentHashMap<>();
     private long lastCacheClean = System.currentTimeMillis();
     private static final long CACHE_CLEAN_INTERVAL = 30000; // 30 seconds
-    private static final int MAX_CACHE_SIZE = 1000;
+    // Claim and trust changes clear entries right away, the TTL covers permission plugins and ignoreclaims
+    private static final long CACHE_TTL = 30000;
 
-    public GriefPreventionHook(CelestCombat plugin, CombatManager combatManager) {
+    private record PermissionResult(boolean isProtected, long expiresAt) {
+    }
+
+    private static class PlayerClaimCache {
+        final Map<Long, PermissionResult> permissions = new ConcurrentHashMap<>();
+        // The claim the player last looked up, the next block is usually in it too
+        volatile ClaimIndex.ClaimBounds lastClaim;
+    }
+
+    public GriefPreventionHook(CelestCombat plugin, CombatManager combatManager, FakeBlockOverlay overlay,
+                               WorldBorderBarrier worldBorderBarrier) {
         this.plugin = plugin;
         this.combatManager = combatManager;
+        this.overlay = overlay;
+        this.overlayLayer = overlay.registerLayer();
+        this.worldBorderBarrier = worldBorderBarrier;
 
         // Load configuration
         reloadConfig();
@@ -72,12 +99,14 @@ public class GriefPreventionHook implements Listener {
         this.barrierMaterial = loadBarrierMaterial();
         this.pushBackForce = plugin.getConfig().getDouble("claim_protection.push_back_force", 0.6);
         this.requiredPermission = loadRequiredPermission();
+        this.renderMode = BarrierRenderMode.load(plugin, "claim_protection.barrier_render_mode");
 
         // Load per-world settings
         loadWorldSettings();
 
         // Clear cache when config reloads
-        claimCache.clear();
+        claimCaches.clear();
+        claimIndex.clear();
     }
 
     private void loadWorldSettings() {
@@ -153,35 +182,30 @@ public class GriefPreventionHook implements Listener {
         }
     }
 
-    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
-    public void onPlayerMove(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
-
-        // Skip if claim protection is not enabled in this world
-        if (!isEnabledAtLocation(event.getTo())) {
-            // Remove any existing barriers for this player if protection is disabled
-            removePlayerBarriers(player);
-            return;
-        }
-
-        // Skip event if player is not in combat
-        if (!combatManager.isInCombat(player)) {
-            // Remove any barriers for this player
-            removePlayerBarriers(player);
-            return;
-        }
+    @Override
+    public boolean isEnabledIn(World world) {
+        return isEnabledInWorld(world);
+    }
 
-        // Only process if the player has moved to a new block (optimization)
-        Location from = event.getFrom();
-        Location to = event.getTo();
+    @Override
+    public void onMovementStopped(Player player) {
+        // Remove any barriers for this player
+        removePlayerBarriers(player);
+    }
 
-        if (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() && from.getBlockZ() == to.getBlockZ()) {
-            return;
-        }
+    /**
+     * Handles a tagged player moving into a new block, the world, combat and
+     * block change checks are already done by the movement listener
+     */
+    @Override
+    public void onMove(MovementContext context) {
+        Player player = context.getPlayer();
+        Location from = context.getFrom();
+        Location to = context.getTo();
 
         // Check if player is crossing between unprotected and protected claims
-        boolean fromProtected = isInProtectedClaim(from, player);
-        boolean toProtected = isInProtectedClaim(to, player);
+        boolean fromProtected = isInProtectedClaim(from.getWorld(), context.getFromX(), context.getFromY(), context.getFromZ(), player);
+        boolean toProtected = isInProtectedClaim(context.getWorld(), context.getToX(), context.getToY(), context.getToZ(), player);
 
         // If trying to enter a protected claim while in combat
         if (!fromProtected && toProtected) {
@@ -222,52 +246,12 @@ public class GriefPreventionHook implements Listener {
         Location blockLoc = event.getClickedBlock().getLocation();
 
         // Check if this block is a barrier for this player
-        Set<Location> playerBarrierSet = playerBarriers.get(player.getUniqueId());
-        if (playerBarrierSet != null && containsBlockLocation(playerBarrierSet, blockLoc)) {
+        if (overlay.isShown(player, overlayLayer, blockLoc)) {
             // Cancel the interaction to prevent visual glitches
             event.setCancelled(true);
 
             // Refresh the barrier block for the player to fix any visual issues
-            Scheduler.runTaskLater(() -> refreshBarrierBlock(blockLoc, player), 1L);
-        }
-    }
-
-    /**
-     * Helper method to check if a set of locations contains a block location
-     * This normalizes locations to block coordinates for proper comparison
-     */
-    private boolean containsBlockLocation(Set<Location> locations, Location blockLoc) {
-        Location normalizedBlockLoc = normalizeToBlockLocation(blockLoc);
-
-        for (Location loc : locations) {
-            Location normalizedLoc = normalizeToBlockLocation(loc);
-            if (normalizedLoc.equals(normalizedBlockLoc)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Normalizes a location to block coordinates (integer coordinates)
-     */
-    private Location normalizeToBlockLocation(Location loc) {
-        return new Location(
-                loc.getWorld(),
-                loc.getBlockX(),
-                loc.getBlockY(),
-                loc.getBlockZ()
-        );
-    }
-
-    private void refreshBarrierBlock(Location loc, Player player) {
-        // Normalize the location to ensure proper lookup
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-
-        Set<UUID> viewers = barrierViewers.get(normalizedLoc);
-        if (viewers != null && viewers.contains(player.getUniqueId())) {
-            // Re-send the barrier block to fix any visual issues
-            player.sendBlockChange(normalizedLoc, barrierMaterial.createBlockData());
+            Scheduler.runEntityTaskLater(player, () -> overlay.refresh(player, blockLoc), 1L);
         }
     }
 
@@ -278,15 +262,54 @@ public class GriefPreventionHook implements Listener {
             return;
         }
 
-        Location blockLoc = normalizeToBlockLocation(event.getBlock().getLocation());
-
-        // Check if this block is part of a barrier system
-        if (originalBlocks.containsKey(blockLoc)) {
+        // Check if this block is a barrier for the player breaking it
+        if (overlay.isShown(event.getPlayer(), overlayLayer, event.getBlock().getLocation())) {
             // Don't allow breaking barrier blocks
             event.setCancelled(true);
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimCreated(ClaimCreatedEvent event) {
+        invalidateClaims(List.of(event.getClaim()), true);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClaimDeleted(ClaimDeletedEvent event) {
+        invalidateClaims(List.of(event.getClaim()), true);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimChange(ClaimChangeEvent event) {
+        invalidateClaims(List.of(event.getFrom(), event.getTo()), true);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimExtend(ClaimExtendEvent event) {
+        invalidateClaims(List.of(event.getClaim()), true);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimTransfer(ClaimTransferEvent event) {
+        invalidateClaims(List.of(event.getClaim()), true);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTrustChanged(TrustChangedEvent event) {
+        // Trust does not move claims, only the cached permissions change
+        invalidateClaims(event.getClaims(), false);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        claimIndex.unloadChunk(event.getWorld(), event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        claimIndex.unloadWorld(event.getWorld());
+    }
+
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
@@ -297,6 +320,7 @@ public class GriefPreventionHook implements Listener {
 
         // Clean up other player-specific data
         lastMessageTime.remove(playerUUID);
+        claimCaches.remove(playerUUID);
     }
 
     private void pushPlayerBack(Player player, Location from, Location to) {
@@ -367,54 +391,111 @@ public class GriefPreventionHook implements Listener {
             return;
         }
 
-        Set<Location> newBarriers = findNearbyBarrierLocations(player.getLocation(), player);
-        Set<Location> currentBarriers = playerBarriers.getOrDefault(player.getUniqueId(), new HashSet<>());
+        Location playerLoc = player.getLocation();
 
-        // Remove barriers that are no longer needed
-        Set<Location> toRemove = new HashSet<>(currentBarriers);
-        toRemove.removeAll(newBarriers);
-        for (Location loc : toRemove) {
-            removeBarrierBlock(loc, player);
+        // Rectangular claims can be shown as a world border instead of blocks
+        if (renderMode == BarrierRenderMode.WORLD_BORDER && showWorldBorder(player, playerLoc)) {
+            removeBlockBarriers(player);
+            return;
         }
+        worldBorderBarrier.hide(player, overlayLayer);
 
-        // Add new barriers
-        Set<Location> toAdd = new HashSet<>(newBarriers);
-        toAdd.removeAll(currentBarriers);
-        for (Location loc : toAdd) {
-            createBarrierBlock(loc, player);
-        }
+        PackedBlockSet newBarriers = findNearbyBarrierLocations(playerLoc, player);
+
+        // Let the overlay place the new barriers and restore the old ones
+        BlockChangeBatch changes = new BlockChangeBatch();
+        overlay.replaceLayer(player, overlayLayer, playerLoc.getWorld(), newBarriers, barrierMaterial, changes);
+        changes.send(player);
 
-        // Update player's barrier set
+        // Remember the player so the cleanup task can clear their barriers
         if (newBarriers.isEmpty()) {
-            playerBarriers.remove(player.getUniqueId());
+            barrierPlayers.remove(player.getUniqueId());
         } else {
-            playerBarriers.put(player.getUniqueId(), newBarriers);
+            barrierPlayers.add(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Shows the barrier as a world border when a single claim without subdivisions is near the player
+     *
+     * @return False if the barrier has to be shown with blocks
+     */
+    private boolean showWorldBorder(Player player, Location playerLoc) {
+        World world = playerLoc.getWorld();
+        int radius = barrierDetectionRadius;
+        int x = playerLoc.getBlockX();
+        int y = playerLoc.getBlockY();
+        int z = playerLoc.getBlockZ();
+
+        try {
+            // Claims are listed per chunk, a claim spanning several chunks shows up more than once
+            ClaimIndex.ClaimBounds nearbyClaim = null;
+            for (int chunkX = (x - radius) >> 4; chunkX <= (x + radius) >> 4; chunkX++) {
+                for (int chunkZ = (z - radius) >> 4; chunkZ <= (z + radius) >> 4; chunkZ++) {
+                    for (ClaimIndex.ClaimBounds bounds : claimIndex.getClaims(world, chunkX, chunkZ)) {
+                        if (bounds.maxX() < x - radius || bounds.minX() > x + radius
+                                || bounds.maxZ() < z - radius || bounds.minZ() > z + radius) {
+                            continue;
+                        }
+
+                        if (nearbyClaim != null && nearbyClaim.claim() != bounds.claim()) return false;
+                        nearbyClaim = bounds;
+                    }
+                }
+            }
+
+            if (nearbyClaim == null) {
+                // Nothing to show
+                worldBorderBarrier.hide(player, overlayLayer);
+                return true;
+            }
+
+            // Subdivisions can have other permissions, and the border has no height
+            if (!nearbyClaim.claim().children.isEmpty()) return false;
+            if (nearbyClaim.minY() > y - 2) return false;
+
+            // Claims the player can enter need no wall
+            int insideX = Math.max(nearbyClaim.minX(), Math.min(x, nearbyClaim.maxX()));
+            int insideZ = Math.max(nearbyClaim.minZ(), Math.min(z, nearbyClaim.maxZ()));
+            if (!isInProtectedClaim(world, insideX, y, insideZ, player)) {
+                worldBorderBarrier.hide(player, overlayLayer);
+                return true;
+            }
+
+            return worldBorderBarrier.show(player, overlayLayer, nearbyClaim.minX(), nearbyClaim.minZ(),
+                    nearbyClaim.maxX(), nearbyClaim.maxZ());
+
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error checking GriefPrevention claim: " + e.getMessage());
+            return false;
         }
     }
 
     /**
      * Finds locations where barriers should be placed near the player
      */
-    private Set<Location> findNearbyBarrierLocations(Location playerLoc, Player player) {
-        Set<Location> barrierLocations = new HashSet<>();
+    private PackedBlockSet findNearbyBarrierLocations(Location playerLoc, Player player) {
+        PackedBlockSet barrierLocations = new PackedBlockSet();
 
         // Search in a radius around the player for claim borders
         int radius = barrierDetectionRadius;
+        int radiusSquared = radius * radius;
+        World world = playerLoc.getWorld();
+        int baseX = playerLoc.getBlockX();
+        int baseY = playerLoc.getBlockY();
+        int baseZ = playerLoc.getBlockZ();
 
         for (int x = -radius; x <= radius; x++) {
             for (int z = -radius; z <= radius; z++) {
                 for (int y = -2; y <= barrierHeight; y++) {
-                    Location checkLoc = playerLoc.clone().add(x, y, z);
-
-                    // Skip if too far from player (circular radius)
-                    if (checkLoc.distance(playerLoc) > radius) {
+                    // Skip if too far from player (spherical radius)
+                    if (x * x + y * y + z * z > radiusSquared) {
                         continue;
                     }
 
                     // Check if this location is on the border between unprotected and protected claims
-                    if (isBorderLocation(checkLoc, player)) {
-                        // Normalize the location to block coordinates
-                        barrierLocations.add(normalizeToBlockLocation(checkLoc));
+                    if (isBorderLocation(world, baseX + x, baseY + y, baseZ + z, player)) {
+                        barrierLocations.add(BlockKeys.pack(baseX + x, baseY + y, baseZ + z));
                     }
                 }
             }
@@ -426,85 +507,29 @@ public class GriefPreventionHook implements Listener {
     /**
      * Checks if a location is on the border between unprotected and protected claims
      */
-    private boolean isBorderLocation(Location loc, Player player) {
-        if (!isInProtectedClaim(loc, player)) {
+    private boolean isBorderLocation(World world, int x, int y, int z, Player player) {
+        if (!isInProtectedClaim(world, x, y, z, player)) {
             return false;
         }
 
         // Check adjacent blocks to see if any are unprotected
-        int[][] directions = {{1,0,0}, {-1,0,0}, {0,0,1}, {0,0,-1}};
-
-        for (int[] dir : directions) {
-            Location adjacent = loc.clone().add(dir[0], dir[1], dir[2]);
-            if (!isInProtectedClaim(adjacent, player)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
-    /**
-     * Creates a barrier block at the specified location for the player
-     */
-    private void createBarrierBlock(Location loc, Player player) {
-        // Normalize location to block coordinates
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-        Block block = normalizedLoc.getBlock();
-
-        // Only create barrier if the block is air or replaceable
-        if (block.getType() != Material.AIR && block.getType().isSolid()) {
-            return;
-        }
-
-        // Store original block type
-        originalBlocks.put(normalizedLoc, block.getType());
-
-        // Add player to viewers of this barrier
-        barrierViewers.computeIfAbsent(normalizedLoc, k -> new HashSet<>()).add(player.getUniqueId());
-
-        // Send block change to player (configurable barrier material)
-        player.sendBlockChange(normalizedLoc, barrierMaterial.createBlockData());
-    }
-
-    /**
-     * Removes a barrier block at the specified location for the player
-     */
-    private void removeBarrierBlock(Location loc, Player player) {
-        // Normalize location to block coordinates
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-
-        Set<UUID> viewers = barrierViewers.get(normalizedLoc);
-        if (viewers != null) {
-            viewers.remove(player.getUniqueId());
-
-            // If no more viewers, clean up completely
-            if (viewers.isEmpty()) {
-                barrierViewers.remove(normalizedLoc);
-                Material originalType = originalBlocks.remove(normalizedLoc);
-                if (originalType != null) {
-                    // Restore original block for the player
-                    player.sendBlockChange(normalizedLoc, originalType.createBlockData());
-                }
-            } else {
-                // Just restore original block for this player
-                Material originalType = originalBlocks.get(normalizedLoc);
-                if (originalType != null) {
-                    player.sendBlockChange(normalizedLoc, originalType.createBlockData());
-                }
-            }
-        }
+        return !isInProtectedClaim(world, x + 1, y, z, player)
+                || !isInProtectedClaim(world, x - 1, y, z, player)
+                || !isInProtectedClaim(world, x, y, z + 1, player)
+                || !isInProtectedClaim(world, x, y, z - 1, player);
     }
 
     /**
      * Removes all barriers for a specific player
      */
     private void removePlayerBarriers(Player player) {
-        Set<Location> barriers = playerBarriers.remove(player.getUniqueId());
-        if (barriers != null) {
-            for (Location loc : barriers) {
-                removeBarrierBlock(loc, player);
-            }
+        worldBorderBarrier.hide(player, overlayLayer);
+        removeBlockBarriers(player);
+    }
+
+    private void removeBlockBarriers(Player player) {
+        if (barrierPlayers.remove(player.getUniqueId())) {
+            overlay.clearLayer(player, overlayLayer);
         }
     }
 
@@ -528,42 +553,23 @@ public class GriefPreventionHook implements Listener {
     }
 
     private void cleanupPlayerBarriers() {
-        Iterator<Map.Entry<UUID, Set<Location>>> iterator = playerBarriers.entrySet().iterator();
+        worldBorderBarrier.hideWhere(overlayLayer, player -> !combatManager.isInCombat(player));
+
+        Iterator<UUID> iterator = barrierPlayers.iterator();
         while (iterator.hasNext()) {
-            Map.Entry<UUID, Set<Location>> entry = iterator.next();
-            UUID playerUUID = entry.getKey();
+            UUID playerUUID = iterator.next();
             Player player = plugin.getServer().getPlayer(playerUUID);
 
             if (player == null || !player.isOnline() || !combatManager.isInCombat(player)) {
-                // Remove barriers for this player
-                Set<Location> barriers = entry.getValue();
+                // Remove barriers for this player, the overlay forgets offline players by itself
                 if (player != null && player.isOnline()) {
-                    for (Location loc : barriers) {
-                        removeBarrierBlock(loc, player);
-                    }
-                } else {
-                    // Player is offline, just clean up data
-                    for (Location loc : barriers) {
-                        cleanupOfflinePlayerBarrier(loc, playerUUID);
-                    }
+                    overlay.clearLayer(player, overlayLayer);
                 }
                 iterator.remove();
             }
         }
     }
 
-    private void cleanupOfflinePlayerBarrier(Location loc, UUID playerUUID) {
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-        Set<UUID> viewers = barrierViewers.get(normalizedLoc);
-        if (viewers != null) {
-            viewers.remove(playerUUID);
-            if (viewers.isEmpty()) {
-                barrierViewers.remove(normalizedLoc);
-                originalBlocks.remove(normalizedLoc);
-            }
-        }
-    }
-
     private void cleanupMessageCooldowns(long currentTime) {
         lastMessageTime.entrySet().removeIf(entry ->
                 currentTime - entry.getValue() > MESSAGE_COOLDOWN * 10); // Keep for 10x cooldown time
@@ -571,44 +577,46 @@ public class GriefPreventionHook implements Listener {
 
     private void cleanupClaimCache(long currentTime) {
         if (currentTime - lastCacheClean > CACHE_CLEAN_INTERVAL) {
-            // Clean cache if it's too large
-            if (claimCache.size() > MAX_CACHE_SIZE) {
-                claimCache.clear();
+            // Drop expired permissions, claims leave the index with their chunk
+            for (PlayerClaimCache claimCache : claimCaches.values()) {
+                claimCache.permissions.values().removeIf(result -> result.expiresAt() <= currentTime);
             }
             lastCacheClean = currentTime;
         }
     }
 
     /**
-     * Checks if a location is in a protected claim (claim that the player cannot access)
+     * Checks if a block is in a protected claim (claim that the player cannot access)
      */
-    private boolean isInProtectedClaim(Location location, Player player) {
-        if (location == null) return false;
+    private boolean isInProtectedClaim(World world, int x, int y, int z, Player player) {
+        if (world == null) return false;
 
-        // Create cache key
-        String cacheKey = location.getWorld().getName() + ":" +
-                location.getBlockX() + ":" +
-                location.getBlockY() + ":" +
-                location.getBlockZ() + ":" +
-                player.getUniqueId().toString();
-
-        // Check cache first
-        Boolean cached = claimCache.get(cacheKey);
-        if (cached != null) {
-            return cached;
-        }
+        PlayerClaimCache claimCache = claimCaches.computeIfAbsent(player.getUniqueId(), uuid -> new PlayerClaimCache());
 
         try {
-            Claim claim = GriefPrevention.instance.dataStore.getClaimAt(location, false, null);
+            // Try the claim of the last lookup before searching the chunk
+            ClaimIndex.ClaimBounds bounds = claimCache.lastClaim;
+            if (bounds == null || !bounds.contains(world.getUID(), x, y, z)) {
+                bounds = claimIndex.findClaim(world, x, y, z);
+                if (bounds == null) return false;
+                claimCache.lastClaim = bounds;
+            }
 
-            boolean isProtected = false;
-            if (claim != null) {
-                Supplier<String> permissionResult = claim.checkPermission(player, requiredPermission, null);
-                isProtected = permissionResult != null; // null means allowed, any string means denied
+            Claim claim = bounds.claimAt(world, x, y, z);
+            Long claimId = claim.getID();
+            long currentTime = System.currentTimeMillis();
+            PermissionResult cached = claimId != null ? claimCache.permissions.get(claimId) : null;
+            if (cached != null && cached.expiresAt() > currentTime) {
+                return cached.isProtected();
             }
 
+            Supplier<String> permissionResult = claim.checkPermission(player, requiredPermission, null);
+            boolean isProtected = permissionResult != null; // null means allowed, any string means denied
+
             // Cache the result
-            claimCache.put(cacheKey, isProtected);
+            if (claimId != null) {
+                claimCache.permissions.put(claimId, new PermissionResult(isProtected, currentTime + CACHE_TTL));
+            }
             return isProtected;
 
         } catch (Exception e) {
@@ -617,6 +625,57 @@ public class GriefPreventionHook implements Listener {
         }
     }
 
+    /**
+     * Forgets cached claims after claims or trust changed. GriefPrevention fires its
+     * events before applying the change, so the old bounds are read right away and
+     * the rest runs a tick later.
+     *
+     * @param claims The changed claims, or null if any claim may have changed
+     * @param boundsChanged Whether the chunks under the claims have to be indexed again
+     */
+    private void invalidateClaims(Collection<Claim> claims, boolean boundsChanged) {
+        List<Location> oldCorners = new ArrayList<>();
+        if (boundsChanged && claims != null) {
+            for (Claim claim : claims) {
+                oldCorners.add(claim.getLesserBoundaryCorner());
+                oldCorners.add(claim.getGreaterBoundaryCorner());
+            }
+        }
+
+        Scheduler.runTaskLater(() -> {
+            if (boundsChanged) {
+                if (claims == null) {
+                    claimIndex.clear();
+                } else {
+                    // Chunks under the old and the new bounds
+                    for (int i = 0; i < oldCorners.size(); i += 2) {
+                        claimIndex.invalidate(oldCorners.get(i), oldCorners.get(i + 1));
+                    }
+                    for (Claim claim : claims) {
+                        claimIndex.invalidate(claim.getLesserBoundaryCorner(), claim.getGreaterBoundaryCorner());
+                    }
+                }
+            }
+
+            for (PlayerClaimCache claimCache : claimCaches.values()) {
+                if (boundsChanged) {
+                    claimCache.lastClaim = null;
+                }
+                if (claims == null) {
+                    claimCache.permissions.clear();
+                    continue;
+                }
+
+                for (Claim claim : claims) {
+                    claimCache.permissions.remove(claim.getID());
+                    for (Claim child : claim.children) {
+                        claimCache.permissions.remove(child.getID());
+                    }
+                }
+            }
+        }, 1L);
+    }
+
     private boolean isLocationSafe(Location location) {
         if (location == null) return false;
 
@@ -679,11 +738,12 @@ public class GriefPreventionHook implements Listener {
      * Cleanup method to be called when plugin is disabled
      */
     public void cleanup() {
-        playerBarriers.clear();
-        originalBlocks.clear();
-        barrierViewers.clear();
+        barrierPlayers.clear();
+        overlay.clearLayer(overlayLayer);
+        worldBorderBarrier.hideAll(overlayLayer);
         lastMessageTime.clear();
-        claimCache.clear();
+        claimCaches.clear();
+        claimIndex.clear();
         worldSettings.clear();
     }
 }
\ No newline at end of file
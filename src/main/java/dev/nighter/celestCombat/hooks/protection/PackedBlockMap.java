@@ -0,0 +1,156 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+/**
+ * An open-addressing map from packed block coordinates to a long, see
+ * {@link BlockKeys#pack(int, int, int)}.
+ *
+ * Keys and values are kept in primitive arrays, so nothing is boxed or allocated
+ * per entry. Keys are probed linearly and removals shift later entries back, so
+ * the table never needs tombstones. {@link PackedBlockSet} is a key-only view over
+ * this map. Not thread-safe, callers synchronize on the owner.
+ */
+public class PackedBlockMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    public PackedBlockMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @return The value stored for the key, or the default value if there is none
+     */
+    public long get(long key, long defaultValue) {
+        int slot = slotOf(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * @return True if the key was not in the map yet
+     */
+    public boolean put(long key, long value) {
+        if (size >= keys.length >> 1) {
+            rehash(keys.length << 1);
+        }
+
+        int slot = indexFor(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return True if the key was in the map
+     */
+    public boolean remove(long key) {
+        int slot = slotOf(key);
+        if (slot < 0) return false;
+
+        deleteSlot(slot);
+        size--;
+        return true;
+    }
+
+    public void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    // Returns the slot holding a key, or -1
+    private int slotOf(long key) {
+        int slot = indexFor(key);
+        while (used[slot]) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Closes the gap left by a removed entry so later entries of its probe chain stay reachable
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (used[next]) {
+            int home = indexFor(keys[next]);
+            // Move the entry into the gap if its home slot is not between the gap and its position
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[gap] = false;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) continue;
+
+            int slot = indexFor(oldKeys[i]);
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            used[slot] = true;
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int indexFor(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
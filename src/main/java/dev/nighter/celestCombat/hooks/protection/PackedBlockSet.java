@@ -0,0 +1,47 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import java.util.function.LongConsumer;
+
+/**
+ * A set of packed block coordinates, see {@link BlockKeys#pack(int, int, int)}.
+ *
+ * A key-only view over a {@link PackedBlockMap}, so adding, removing and looking
+ * up a block allocates nothing. Not thread-safe, callers synchronize on the owner.
+ */
+public class PackedBlockSet {
+    private final PackedBlockMap map = new PackedBlockMap();
+
+    public boolean contains(long key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * @return True if the key was not in the set yet
+     */
+    public boolean add(long key) {
+        return map.put(key, 0L);
+    }
+
+    /**
+     * @return True if the key was in the set
+     */
+    public boolean remove(long key) {
+        return map.remove(key);
+    }
+
+    public void forEach(LongConsumer action) {
+        map.forEach((key, value) -> action.accept(key));
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,292 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldguard.protection.flags.Flags;
+import com.sk89q.worldguard.protection.flags.RegionGroup;
+import com.sk89q.worldguard.protection.flags.StateFlag;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import com.sk89q.worldguard.protection.regions.RegionType;
+import dev.nighter.celestCombat.CelestCombat;
+import dev.nighter.celestCombat.Scheduler;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Notices WorldGuard region changes and rebuilds the safe zone index where they happened.
+ *
+ * WorldGuard has no event for region edits, so a snapshot of every region keeps
+ * everything the safe zone bitmaps depend on: its shape, priority, PvP flag and the
+ * group that flag applies to, including those inherited from its parents. Comparing
+ * the snapshots finds the regions that were added, removed or edited, and only the
+ * chunks under their old and new bounds are rebuilt. A reload of the regions replaces
+ * the region manager of a world, which rebuilds the whole world.
+ *
+ * Region commands trigger a full check. Edits made by other plugins are picked up by
+ * a sweep that compares a limited number of regions per run, going through the
+ * worlds in turn, so its cost per run does not grow with the number of regions.
+ * The worlds and their region managers are collected on the main thread and the
+ * regions are compared in the background.
+ */
+public class RegionChangeWatcher {
+    // WorldGuard applies some region commands in the background
+    private static final long COMMAND_CHECK_DELAY = 10L;
+    private static final int SWEEP_BATCH = 512;
+
+    private final CelestCombat plugin;
+    private final SafeZoneIndex safeZoneIndex;
+    private final Predicate<World> enabledIn;
+    private final Map<UUID, WorldRegions> worlds = new HashMap<>();
+
+    // The chain holds the region itself followed by its parents
+    private record RegionState(RegionType type, BlockVector3 min, BlockVector3 max, List<BlockVector2> points,
+                               List<InheritedState> chain, int minX, int minZ, int maxX, int maxZ) {
+    }
+
+    private record InheritedState(String id, int priority, StateFlag.State pvp, RegionGroup pvpGroup) {
+    }
+
+    private static class WorldRegions {
+        final RegionManager regionManager;
+        final Map<String, RegionState> regions;
+        // Region ids of the sweep in progress, null until the world's next sweep starts
+        List<String> sweepIds;
+        int sweepCursor;
+
+        WorldRegions(RegionManager regionManager, Map<String, RegionState> regions) {
+            this.regionManager = regionManager;
+            this.regions = regions;
+        }
+    }
+
+    // The world whose regions the sweep is going through
+    private UUID sweepWorldId;
+
+    /**
+     * @param enabledIn Worlds to watch, the others are never indexed
+     */
+    public RegionChangeWatcher(CelestCombat plugin, SafeZoneIndex safeZoneIndex, Predicate<World> enabledIn) {
+        this.plugin = plugin;
+        this.safeZoneIndex = safeZoneIndex;
+        this.enabledIn = enabledIn;
+    }
+
+    /**
+     * Checks for changes shortly after a region command ran
+     */
+    public void scheduleCheck() {
+        Scheduler.runTaskLater(this::checkSoon, COMMAND_CHECK_DELAY);
+    }
+
+    /**
+     * Compares every region in the background, called on the main thread
+     */
+    public void checkSoon() {
+        Map<World, RegionManager> watched = collectWorlds();
+        Scheduler.runTaskAsync(() -> checkForChanges(watched));
+    }
+
+    /**
+     * Compares the next batch of regions in the background, called on the main thread
+     */
+    public void sweepSoon() {
+        Map<World, RegionManager> watched = collectWorlds();
+        Scheduler.runTaskAsync(() -> sweep(watched));
+    }
+
+    // The watched worlds with their region managers, only safe to call on the main thread
+    private Map<World, RegionManager> collectWorlds() {
+        Map<World, RegionManager> watched = new LinkedHashMap<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            if (!enabledIn.test(world)) continue;
+
+            try {
+                RegionManager regionManager = WorldGuard.getInstance().getPlatform()
+                        .getRegionContainer().get(BukkitAdapter.adapt(world));
+                if (regionManager != null) {
+                    watched.put(world, regionManager);
+                }
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error checking WorldGuard regions: " + e.getMessage());
+            }
+        }
+        return watched;
+    }
+
+    /**
+     * Compares the regions of every watched world with the last check and rebuilds
+     * the index where they differ. The first check of a world only records its regions.
+     */
+    private synchronized void checkForChanges(Map<World, RegionManager> watched) {
+        Map<UUID, WorldRegions> current = new HashMap<>();
+
+        for (Map.Entry<World, RegionManager> entry : watched.entrySet()) {
+            World world = entry.getKey();
+            try {
+                WorldRegions regions = new WorldRegions(entry.getValue(), snapshot(entry.getValue()));
+                WorldRegions previous = worlds.get(world.getUID());
+                if (previous != null) {
+                    applyChanges(world, previous, regions);
+                }
+                current.put(world.getUID(), regions);
+
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error checking WorldGuard regions: " + e.getMessage());
+            }
+        }
+
+        // Forget unloaded and disabled worlds
+        worlds.clear();
+        worlds.putAll(current);
+    }
+
+    /**
+     * Compares up to a batch of regions of the world the sweep is in, moving on to
+     * the next world once all of its regions were compared
+     */
+    private synchronized void sweep(Map<World, RegionManager> watched) {
+        List<World> order = new ArrayList<>(watched.keySet());
+        List<UUID> worldIds = new ArrayList<>();
+        for (World world : order) {
+            worldIds.add(world.getUID());
+        }
+
+        // Forget unloaded and disabled worlds
+        worlds.keySet().retainAll(worldIds);
+        if (order.isEmpty()) return;
+
+        int index = Math.max(0, worldIds.indexOf(sweepWorldId));
+        World world = order.get(index);
+        sweepWorldId = world.getUID();
+
+        try {
+            if (sweepWorld(world, watched.get(world))) {
+                // Done with this world, the next run starts on the next one
+                sweepWorldId = worldIds.get((index + 1) % worldIds.size());
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error checking WorldGuard regions: " + e.getMessage());
+        }
+    }
+
+    // Returns true once every region of the world was compared
+    private boolean sweepWorld(World world, RegionManager regionManager) {
+        WorldRegions previous = worlds.get(world.getUID());
+        if (previous == null || previous.regionManager != regionManager) {
+            WorldRegions regions = new WorldRegions(regionManager, snapshot(regionManager));
+            if (previous != null) {
+                applyChanges(world, previous, regions);
+            }
+            worlds.put(world.getUID(), regions);
+            return true;
+        }
+
+        if (previous.sweepIds == null) {
+            previous.sweepIds = new ArrayList<>(regionManager.getRegions().keySet());
+            previous.sweepCursor = 0;
+        }
+
+        int end = Math.min(previous.sweepIds.size(), previous.sweepCursor + SWEEP_BATCH);
+        for (; previous.sweepCursor < end; previous.sweepCursor++) {
+            String id = previous.sweepIds.get(previous.sweepCursor);
+            ProtectedRegion region = regionManager.getRegion(id);
+            if (region == null) continue; // Removed since the sweep started, handled below
+
+            RegionState before = previous.regions.get(id);
+            RegionState after = stateOf(region);
+            if (after.equals(before)) continue;
+
+            plugin.debug("WorldGuard region '" + id + "' changed, rebuilding its safezones");
+            rebuild(world, after);
+            if (before != null) {
+                rebuild(world, before);
+            }
+            previous.regions.put(id, after);
+        }
+        if (previous.sweepCursor < previous.sweepIds.size()) return false;
+
+        // Regions that are gone, added ones are compared in the next sweep of this world
+        previous.regions.entrySet().removeIf(entry -> {
+            if (regionManager.hasRegion(entry.getKey())) return false;
+
+            plugin.debug("WorldGuard region '" + entry.getKey() + "' was removed, rebuilding its safezones");
+            rebuild(world, entry.getValue());
+            return true;
+        });
+        previous.sweepIds = null;
+        return true;
+    }
+
+    public synchronized void clear() {
+        worlds.clear();
+    }
+
+    private void applyChanges(World world, WorldRegions previous, WorldRegions current) {
+        if (previous.regionManager != current.regionManager) {
+            plugin.debug("WorldGuard regions of world '" + world.getName() + "' were reloaded, rebuilding safezones");
+            safeZoneIndex.reloadWorld(world);
+            return;
+        }
+
+        for (Map.Entry<String, RegionState> entry : current.regions.entrySet()) {
+            RegionState before = previous.regions.get(entry.getKey());
+            RegionState after = entry.getValue();
+            if (after.equals(before)) continue;
+
+            plugin.debug("WorldGuard region '" + entry.getKey() + "' changed, rebuilding its safezones");
+            rebuild(world, after);
+            if (before != null) {
+                rebuild(world, before);
+            }
+        }
+
+        for (Map.Entry<String, RegionState> entry : previous.regions.entrySet()) {
+            if (!current.regions.containsKey(entry.getKey())) {
+                plugin.debug("WorldGuard region '" + entry.getKey() + "' was removed, rebuilding its safezones");
+                rebuild(world, entry.getValue());
+            }
+        }
+    }
+
+    private void rebuild(World world, RegionState state) {
+        safeZoneIndex.rebuildArea(world, state.minX(), state.minZ(), state.maxX(), state.maxZ());
+    }
+
+    private static Map<String, RegionState> snapshot(RegionManager regionManager) {
+        Map<String, RegionState> regions = new HashMap<>();
+        for (ProtectedRegion region : regionManager.getRegions().values()) {
+            regions.put(region.getId(), stateOf(region));
+        }
+        return regions;
+    }
+
+    private static RegionState stateOf(ProtectedRegion region) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        List<InheritedState> chain = new ArrayList<>();
+        // The PvP state of a block comes from the region and its parents
+        for (ProtectedRegion current = region; current != null; current = current.getParent()) {
+            chain.add(new InheritedState(current.getId(), current.getPriority(), current.getFlag(Flags.PVP),
+                    current.getFlag(Flags.PVP.getRegionGroupFlag())));
+        }
+
+        if (region.getType() == RegionType.GLOBAL) {
+            // The global region applies everywhere
+            return new RegionState(region.getType(), min, max, List.copyOf(region.getPoints()),
+                    chain, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        }
+
+        return new RegionState(region.getType(), min, max, List.copyOf(region.getPoints()),
+                chain, min.x(), min.z(), max.x(), max.z());
+    }
+}
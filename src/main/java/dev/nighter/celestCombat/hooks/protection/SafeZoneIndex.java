@@ -0,0 +1,468 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldguard.protection.ApplicableRegionSet;
+import com.sk89q.worldguard.protection.flags.Flags;
+import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedPolygonalRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
+import com.sk89q.worldguard.protection.regions.RegionQuery;
+import com.sk89q.worldguard.protection.regions.RegionType;
+import dev.nighter.celestCombat.CelestCombat;
+import dev.nighter.celestCombat.Scheduler;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed WorldGuard safe zones, one 4096-bit bitmap per 16x16x16 chunk section.
+ *
+ * A set bit marks a block where PvP is denied. Bitmaps are built asynchronously
+ * when a chunk loads and dropped when it unloads. When a region changes only the
+ * chunks it covers are rebuilt, see {@link RegionChangeWatcher}. Chunks that no region touches,
+ * sections without a single safe block and worlds without any regions are stored
+ * as "all clear" summaries, so a lookup there returns without touching WorldGuard.
+ *
+ * While a chunk is being built, lookups report {@link #UNKNOWN} and the caller
+ * falls back to {@link #isPvpDenied(World, int, int, int)}.
+ *
+ * Each chunk also keeps the side edges of the cuboid and polygonal regions near
+ * it, so barrier placement only has to look at blocks along those edges.
+ */
+public class SafeZoneIndex {
+    public static final int UNKNOWN = -1;
+
+    private static final int SECTION_WORDS = 4096 / Long.SIZE;
+    // x1, z1, x2, z2, minY, maxY per edge
+    private static final int EDGE_STRIDE = 6;
+
+    private final CelestCombat plugin;
+    private final RegionQuery regionQuery;
+    private final Map<UUID, WorldIndex> worlds = new ConcurrentHashMap<>();
+    private final Map<UUID, RegionManager> regionManagerCache = new ConcurrentHashMap<>();
+
+    private static class WorldIndex {
+        final Map<Long, ChunkBitmap> chunks = new ConcurrentHashMap<>();
+        final Set<Long> pending = ConcurrentHashMap.newKeySet();
+        volatile boolean allClear;
+    }
+
+    private static class ChunkBitmap {
+        // Shared summary for chunks without a single safe block
+        static final ChunkBitmap ALL_CLEAR = new ChunkBitmap(0, null, null, true);
+
+        final int minSection;
+        // One bitmap per section, null when the section has no safe block
+        final long[][] sections;
+        // Region edges within a block of this chunk, null when there are none
+        final int[] edges;
+        // False if a region of another shape touches the chunk, its edges are unknown
+        final boolean edgesComplete;
+
+        ChunkBitmap(int minSection, long[][] sections, int[] edges, boolean edgesComplete) {
+            this.minSection = minSection;
+            this.sections = sections;
+            this.edges = edges;
+            this.edgesComplete = edgesComplete;
+        }
+
+        boolean get(int x, int y, int z) {
+            if (sections == null) return false;
+
+            int section = (y >> 4) - minSection;
+            if (section < 0 || section >= sections.length) return false;
+
+            long[] bits = sections[section];
+            if (bits == null) return false;
+
+            int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+    }
+
+    public SafeZoneIndex(CelestCombat plugin, RegionQuery regionQuery) {
+        this.plugin = plugin;
+        this.regionQuery = regionQuery;
+    }
+
+    /**
+     * Looks up a block in the index
+     *
+     * @return 1 if PvP is denied, 0 if it is not, or {@link #UNKNOWN} if the chunk has not been built yet
+     */
+    public int lookup(World world, int x, int y, int z) {
+        WorldIndex worldIndex = worlds.get(world.getUID());
+        if (worldIndex == null) return UNKNOWN;
+        if (worldIndex.allClear) return 0;
+
+        ChunkBitmap bitmap = worldIndex.chunks.get(chunkKey(x >> 4, z >> 4));
+        if (bitmap == null) return UNKNOWN;
+
+        return bitmap.get(x, y, z) ? 1 : 0;
+    }
+
+    /**
+     * Receives the side edge of a region, as a line between two block columns
+     */
+    public interface EdgeVisitor {
+        void visit(int x1, int z1, int x2, int z2, int minY, int maxY);
+    }
+
+    /**
+     * Visits the region edges that can border blocks inside a box. Safe zone
+     * borders always lie on or right next to one of these edges.
+     *
+     * @return False if a chunk in the box is not indexed yet or touches a region
+     *         whose edges are unknown, nothing is visited then and the caller
+     *         has to scan the box instead
+     */
+    public boolean forEachEdge(World world, int minX, int minZ, int maxX, int maxZ, EdgeVisitor visitor) {
+        WorldIndex worldIndex = worlds.get(world.getUID());
+        if (worldIndex == null) return false;
+        if (worldIndex.allClear) return true;
+
+        int minChunkX = minX >> 4;
+        int minChunkZ = minZ >> 4;
+        int maxChunkX = maxX >> 4;
+        int maxChunkZ = maxZ >> 4;
+        ChunkBitmap[] bitmaps = new ChunkBitmap[(maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1)];
+
+        int index = 0;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                ChunkBitmap bitmap = worldIndex.chunks.get(chunkKey(chunkX, chunkZ));
+                if (bitmap == null || !bitmap.edgesComplete) return false;
+                bitmaps[index++] = bitmap;
+            }
+        }
+
+        for (ChunkBitmap bitmap : bitmaps) {
+            int[] edges = bitmap.edges;
+            if (edges == null) continue;
+
+            for (int i = 0; i < edges.length; i += EDGE_STRIDE) {
+                visitor.visit(edges[i], edges[i + 1], edges[i + 2], edges[i + 3], edges[i + 4], edges[i + 5]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues a chunk to be built, does nothing if it is already indexed or queued
+     */
+    public void loadChunk(World world, int chunkX, int chunkZ) {
+        WorldIndex worldIndex = getWorldIndex(world);
+        if (worldIndex.allClear) return;
+
+        long key = chunkKey(chunkX, chunkZ);
+        if (worldIndex.chunks.containsKey(key) || !worldIndex.pending.add(key)) return;
+
+        Scheduler.runTaskAsync(() -> {
+            ChunkBitmap bitmap = buildChunk(world, chunkX, chunkZ);
+            // Skip the result if the chunk was unloaded in the meantime, a failed
+            // build leaves the chunk unindexed so lookups fall back to WorldGuard
+            if (worldIndex.pending.remove(key) && bitmap != null) {
+                worldIndex.chunks.put(key, bitmap);
+            }
+        });
+    }
+
+    public void unloadChunk(World world, int chunkX, int chunkZ) {
+        WorldIndex worldIndex = worlds.get(world.getUID());
+        if (worldIndex == null) return;
+
+        long key = chunkKey(chunkX, chunkZ);
+        worldIndex.pending.remove(key);
+        worldIndex.chunks.remove(key);
+    }
+
+    public void unloadWorld(World world) {
+        worlds.remove(world.getUID());
+        regionManagerCache.remove(world.getUID());
+    }
+
+    /**
+     * Rebuilds the indexed chunks of a world asynchronously after its regions were
+     * reloaded, lookups keep using the old bitmaps until the new ones are ready
+     */
+    public void reloadWorld(World world) {
+        // WorldGuard creates new region managers when it reloads
+        regionManagerCache.remove(world.getUID());
+        rebuildArea(world, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Rebuilds the indexed chunks whose bitmaps can depend on a changed area of blocks,
+     * lookups keep using the old bitmaps until the new ones are ready
+     */
+    public void rebuildArea(World world, int minX, int minZ, int maxX, int maxZ) {
+        WorldIndex worldIndex = worlds.get(world.getUID());
+        if (worldIndex == null) return;
+
+        worldIndex.allClear = hasNoRegions(world);
+        if (worldIndex.allClear) {
+            worldIndex.chunks.clear();
+            return;
+        }
+
+        // Chunks also keep the edges of regions a block outside of them
+        long minChunkX = ((long) minX - 1) >> 4;
+        long minChunkZ = ((long) minZ - 1) >> 4;
+        long maxChunkX = ((long) maxX + 1) >> 4;
+        long maxChunkZ = ((long) maxZ + 1) >> 4;
+        for (Long key : worldIndex.chunks.keySet()) {
+            int chunkX = (int) (key >> 32);
+            int chunkZ = (int) (long) key;
+            if (chunkX < minChunkX || chunkX > maxChunkX || chunkZ < minChunkZ || chunkZ > maxChunkZ) continue;
+
+            Scheduler.runTaskAsync(() -> {
+                ChunkBitmap bitmap = buildChunk(world, chunkX, chunkZ);
+                // Only replace chunks that are still loaded
+                if (bitmap != null) {
+                    worldIndex.chunks.replace(key, bitmap);
+                }
+            });
+        }
+    }
+
+    public void clear() {
+        worlds.clear();
+        regionManagerCache.clear();
+    }
+
+    /**
+     * Asks WorldGuard directly whether PvP is denied at a block
+     */
+    public boolean isPvpDenied(World world, int x, int y, int z) {
+        try {
+            RegionManager regionManager = getRegionManager(world);
+            if (regionManager == null) return false;
+
+            ApplicableRegionSet regions = regionManager.getApplicableRegions(BlockVector3.at(x, y, z));
+            if (regions.getRegions().isEmpty()) return false;
+
+            // Use pre-initialized region query for better performance
+            com.sk89q.worldedit.util.Location worldGuardLoc = BukkitAdapter.adapt(new Location(world, x, y, z));
+            return !regionQuery.testState(worldGuardLoc, null, Flags.PVP);
+
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error checking WorldGuard: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Finds the regions, other than the global one, that touch a box of blocks
+     *
+     * @return The regions, empty if WorldGuard could not be queried
+     */
+    public List<ProtectedRegion> getRegionsNear(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        List<ProtectedRegion> regions = new ArrayList<>();
+        try {
+            RegionManager regionManager = getRegionManager(world);
+            if (regionManager == null) return regions;
+
+            ProtectedCuboidRegion box = new ProtectedCuboidRegion("celestcombat_area_probe", true,
+                    BlockVector3.at(minX, minY, minZ), BlockVector3.at(maxX, maxY, maxZ));
+            for (ProtectedRegion region : regionManager.getApplicableRegions(box).getRegions()) {
+                if (region.getType() != RegionType.GLOBAL) {
+                    regions.add(region);
+                }
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error checking WorldGuard: " + e.getMessage());
+        }
+        return regions;
+    }
+
+    private WorldIndex getWorldIndex(World world) {
+        return worlds.computeIfAbsent(world.getUID(), worldId -> {
+            WorldIndex worldIndex = new WorldIndex();
+            worldIndex.allClear = hasNoRegions(world);
+            return worldIndex;
+        });
+    }
+
+    private boolean hasNoRegions(World world) {
+        RegionManager regionManager = getRegionManager(world);
+        if (regionManager == null) return true;
+
+        for (ProtectedRegion region : regionManager.getRegions().values()) {
+            if (region.getType() != RegionType.GLOBAL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns null if the chunk could not be built
+    private ChunkBitmap buildChunk(World world, int chunkX, int chunkZ) {
+        try {
+            RegionManager regionManager = getRegionManager(world);
+            if (regionManager == null) return ChunkBitmap.ALL_CLEAR;
+
+            int minX = chunkX << 4;
+            int minZ = chunkZ << 4;
+            int worldMinY = world.getMinHeight();
+            int worldMaxY = world.getMaxHeight() - 1;
+
+            // Collect the regions that touch this chunk column or the blocks around it,
+            // a border in this chunk can come from an edge just outside of it
+            ProtectedCuboidRegion column = new ProtectedCuboidRegion("celestcombat_chunk_probe", true,
+                    BlockVector3.at(minX - 1, worldMinY, minZ - 1), BlockVector3.at(minX + 16, worldMaxY, minZ + 16));
+            List<ProtectedRegion> candidates = new ArrayList<>();
+            List<Integer> edges = new ArrayList<>();
+            boolean edgesComplete = true;
+            int minY = Integer.MAX_VALUE;
+            int maxY = Integer.MIN_VALUE;
+            for (ProtectedRegion region : regionManager.getApplicableRegions(column).getRegions()) {
+                if (region.getType() == RegionType.GLOBAL) continue;
+                candidates.add(region);
+                minY = Math.min(minY, region.getMinimumPoint().y());
+                maxY = Math.max(maxY, region.getMaximumPoint().y());
+                edgesComplete &= addEdges(region, minX, minZ, edges);
+            }
+
+            if (candidates.isEmpty()) return ChunkBitmap.ALL_CLEAR;
+
+            minY = Math.max(minY, worldMinY);
+            maxY = Math.min(maxY, worldMaxY);
+
+            int minSection = worldMinY >> 4;
+            long[][] sections = new long[(worldMaxY >> 4) - minSection + 1][];
+            boolean anySafe = false;
+
+            // Blocks inside the same regions share the same flags, so WorldGuard is
+            // asked once per distinct set of regions rather than once per block
+            boolean memoize = candidates.size() <= Long.SIZE;
+            Map<Long, Boolean> deniedByRegionSet = new HashMap<>();
+
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z < minZ + 16; z++) {
+                    for (int x = minX; x < minX + 16; x++) {
+                        long regionSet = 0L;
+                        boolean inside = false;
+                        for (int i = 0; i < candidates.size(); i++) {
+                            if (candidates.get(i).contains(x, y, z)) {
+                                inside = true;
+                                if (memoize) regionSet |= 1L << i;
+                            }
+                        }
+                        if (!inside) continue;
+
+                        boolean denied;
+                        if (memoize) {
+                            Boolean known = deniedByRegionSet.get(regionSet);
+                            if (known == null) {
+                                known = isPvpDenied(world, x, y, z);
+                                deniedByRegionSet.put(regionSet, known);
+                            }
+                            denied = known;
+                        } else {
+                            denied = isPvpDenied(world, x, y, z);
+                        }
+                        if (!denied) continue;
+
+                        int section = (y >> 4) - minSection;
+                        if (sections[section] == null) {
+                            sections[section] = new long[SECTION_WORDS];
+                        }
+                        int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+                        sections[section][index >>> 6] |= 1L << index;
+                        anySafe = true;
+                    }
+                }
+            }
+
+            if (!anySafe) return ChunkBitmap.ALL_CLEAR;
+
+            int[] packedEdges = null;
+            if (!edges.isEmpty()) {
+                packedEdges = new int[edges.size()];
+                for (int i = 0; i < packedEdges.length; i++) {
+                    packedEdges[i] = edges.get(i);
+                }
+            }
+            return new ChunkBitmap(minSection, sections, packedEdges, edgesComplete);
+
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error indexing WorldGuard regions: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Adds the side edges of a region that pass within a block of a chunk
+     *
+     * @return False if the region shape has no known edges
+     */
+    private boolean addEdges(ProtectedRegion region, int chunkMinX, int chunkMinZ, List<Integer> edges) {
+        int minY = region.getMinimumPoint().y();
+        int maxY = region.getMaximumPoint().y();
+
+        if (region instanceof ProtectedCuboidRegion) {
+            BlockVector3 min = region.getMinimumPoint();
+            BlockVector3 max = region.getMaximumPoint();
+            addEdge(min.x(), min.z(), max.x(), min.z(), minY, maxY, chunkMinX, chunkMinZ, edges);
+            addEdge(max.x(), min.z(), max.x(), max.z(), minY, maxY, chunkMinX, chunkMinZ, edges);
+            addEdge(max.x(), max.z(), min.x(), max.z(), minY, maxY, chunkMinX, chunkMinZ, edges);
+            addEdge(min.x(), max.z(), min.x(), min.z(), minY, maxY, chunkMinX, chunkMinZ, edges);
+            return true;
+        }
+
+        if (region instanceof ProtectedPolygonalRegion) {
+            List<BlockVector2> points = region.getPoints();
+            for (int i = 0; i < points.size(); i++) {
+                BlockVector2 from = points.get(i);
+                BlockVector2 to = points.get((i + 1) % points.size());
+                addEdge(from.x(), from.z(), to.x(), to.z(), minY, maxY, chunkMinX, chunkMinZ, edges);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    private void addEdge(int x1, int z1, int x2, int z2, int minY, int maxY,
+                         int chunkMinX, int chunkMinZ, List<Integer> edges) {
+        // Keep the edge if its bounds, grown by a block, overlap the chunk
+        if (Math.max(x1, x2) < chunkMinX - 1 || Math.min(x1, x2) > chunkMinX + 16
+                || Math.max(z1, z2) < chunkMinZ - 1 || Math.min(z1, z2) > chunkMinZ + 16) {
+            return;
+        }
+
+        edges.add(x1);
+        edges.add(z1);
+        edges.add(x2);
+        edges.add(z2);
+        edges.add(minY);
+        edges.add(maxY);
+    }
+
+    private RegionManager getRegionManager(World world) {
+        RegionManager regionManager = regionManagerCache.get(world.getUID());
+        if (regionManager == null) {
+            regionManager = WorldGuard.getInstance().getPlatform()
+                    .getRegionContainer().get(BukkitAdapter.adapt(world));
+            if (regionManager != null) {
+                regionManagerCache.put(world.getUID(), regionManager);
+            }
+        }
+        return regionManager;
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
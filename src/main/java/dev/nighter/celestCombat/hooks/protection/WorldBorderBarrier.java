@@ -0,0 +1,146 @@
+package dev.nighter.celestCombat.hooks.protection;
+
+import org.bukkit.Bukkit;
+import org.bukkit.WorldBorder;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Shows the side of a rectangular protected area as a client-side world border.
+ *
+ * A world border is a square, so only one of its sides is lined up with the face
+ * of the area the player stands in front of and the square is made large enough
+ * that its other sides stay far away. One border packet then replaces a whole wall
+ * of fake blocks, and the client itself stops the player from walking through it.
+ *
+ * A player can only see one border, so the first owner to show one keeps it until
+ * it hides it again. Owners are the overlay layers of the hooks.
+ */
+public class WorldBorderBarrier implements Listener {
+    // Keeps the far sides of the border well outside the view of the player
+    private static final int BORDER_MARGIN = 64;
+
+    private final Map<UUID, ShownBorder> shown = new ConcurrentHashMap<>();
+
+    private record ShownBorder(int owner, UUID worldId, double centerX, double centerZ, double size) {
+    }
+
+    /**
+     * Shows the face of a rectangular area that the player stands in front of.
+     * Block bounds are inclusive.
+     *
+     * @return False if the border cannot represent the area here, for example when the
+     * player is diagonal to a corner or another owner shows a border, the caller should
+     * fall back to fake blocks
+     */
+    public boolean show(Player player, int owner, int minX, int minZ, int maxX, int maxZ) {
+        double x = player.getLocation().getX();
+        double z = player.getLocation().getZ();
+        double size = Math.max(maxX - minX + 1, maxZ - minZ + 1) + BORDER_MARGIN * 2;
+        double half = size / 2;
+
+        // Line up one side of the square with the face in front of the player
+        double centerX;
+        double centerZ;
+        boolean alongZ = z >= minZ && z < maxZ + 1;
+        boolean alongX = x >= minX && x < maxX + 1;
+        if (alongZ && !alongX) {
+            centerX = x < minX ? minX - half : maxX + 1 + half;
+            centerZ = (minZ + maxZ + 1) / 2.0;
+        } else if (alongX && !alongZ) {
+            centerX = (minX + maxX + 1) / 2.0;
+            centerZ = z < minZ ? minZ - half : maxZ + 1 + half;
+        } else {
+            // Diagonal to a corner or already inside, a single side cannot show it
+            hide(player, owner);
+            return false;
+        }
+
+        UUID worldId = player.getWorld().getUID();
+        ShownBorder current = shown.get(player.getUniqueId());
+        if (current != null && current.owner() != owner) return false;
+
+        ShownBorder border = new ShownBorder(owner, worldId, centerX, centerZ, size);
+        if (border.equals(current)) return true;
+
+        WorldBorder worldBorder = Bukkit.createWorldBorder();
+        worldBorder.setCenter(centerX, centerZ);
+        worldBorder.setSize(size);
+        worldBorder.setWarningDistance(0);
+        worldBorder.setWarningTime(0);
+        worldBorder.setDamageAmount(0);
+        player.setWorldBorder(worldBorder);
+        shown.put(player.getUniqueId(), border);
+        return true;
+    }
+
+    /**
+     * Gives the player back the border of their world, if the owner showed the current one
+     */
+    public void hide(Player player, int owner) {
+        ShownBorder current = shown.get(player.getUniqueId());
+        if (current == null || current.owner() != owner) return;
+
+        if (shown.remove(player.getUniqueId(), current)) {
+            player.setWorldBorder(null);
+        }
+    }
+
+    /**
+     * Hides the borders of an owner for all players
+     */
+    public void hideAll(int owner) {
+        hideWhere(owner, player -> true);
+    }
+
+    /**
+     * Hides the borders of an owner for the players matching a condition, forgetting offline players
+     */
+    public void hideWhere(int owner, Predicate<Player> condition) {
+        shown.entrySet().removeIf(entry -> {
+            if (entry.getValue().owner() != owner) return false;
+
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null || !player.isOnline()) return true;
+            if (!condition.test(player)) return false;
+
+            player.setWorldBorder(null);
+            return true;
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        Player player = event.getPlayer();
+        if (shown.remove(player.getUniqueId()) != null) {
+            player.setWorldBorder(null);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        shown.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Gives every player back the border of their world
+     */
+    public void shutdown() {
+        for (UUID playerId : shown.keySet()) {
+            Player player = Bukkit.getPlayer(playerId);
+            if (player != null && player.isOnline()) {
+                player.setWorldBorder(null);
+            }
+        }
+        shown.clear();
+    }
+}
@@ -1,15 +1,16 @@
 package dev.nighter.celestCombat.hooks.protection;
 
-import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldguard.WorldGuard;
-import com.sk89q.worldguard.protection.ApplicableRegionSet;
-import com.sk89q.worldguard.protection.flags.Flags;
-import com.sk89q.worldguard.protection.managers.RegionManager;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import com.sk89q.worldguard.protection.regions.RegionQuery;
 import dev.nighter.celestCombat.CelestCombat;
 import dev.nighter.celestCombat.Scheduler;
 import dev.nighter.celestCombat.combat.CombatManager;
+import dev.nighter.celestCombat.listeners.MovementConsumer;
+import dev.nighter.celestCombat.listeners.MovementContext;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -24,16 +25,21 @@ import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.entity.ProjectileHitEvent;
 import org.bukkit.event.entity.ProjectileLaunchEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.projectiles.ProjectileSource;
 import org.bukkit.util.Vector;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
-public class WorldGuardHook implements Listener {
+public class WorldGuardHook implements Listener, MovementConsumer {
     private final CelestCombat plugin;
     private final CombatManager combatManager;
 
@@ -46,9 +52,10 @@ public class WorldGuardHook implements Listener {
     private final Map<UUID, PearlLocationData> pearlThrowLocations = new ConcurrentHashMap<>();
 
     // Visual barrier system
-    private final Map<UUID, Set<Location>> playerBarriers = new ConcurrentHashMap<>();
-    private final Map<Location, Material> originalBlocks = new ConcurrentHashMap<>();
-    private final Map<Location, Set<UUID>> barrierViewers = new ConcurrentHashMap<>();
+    private final FakeBlockOverlay overlay;
+    private final int overlayLayer;
+    private final Map<UUID, BarrierWindow> barrierWindows = new ConcurrentHashMap<>();
+    private final WorldBorderBarrier worldBorderBarrier;
 
     // Configuration
     private boolean globalEnabled;
@@ -57,38 +64,21 @@ public class WorldGuardHook implements Listener {
     private int barrierHeight;
     private Material barrierMaterial;
     private double pushBackForce;
+    private BarrierRenderMode renderMode;
 
-    // Enhanced caching system
-    private final Map<String, SafeZoneInfo> safeZoneCache = new ConcurrentHashMap<>();
-    private final Map<String, Long> regionCheckCache = new ConcurrentHashMap<>();
-    private long lastCacheClean = System.currentTimeMillis();
-    private static final long CACHE_CLEAN_INTERVAL = 30000;
-    private static final long CACHE_TTL = 10000; // 10 seconds TTL for cache entries
-    private static final int MAX_CACHE_SIZE = 2000;
+    // Safe zone bitmaps per chunk section, kept until the chunk unloads and rebuilt where regions change
+    private final SafeZoneIndex safeZoneIndex;
+    private final RegionChangeWatcher regionChangeWatcher;
 
     // Batch processing for barrier updates
     private final Map<UUID, Long> lastBarrierUpdate = new ConcurrentHashMap<>();
     private static final long BARRIER_UPDATE_INTERVAL = 250; // Only update barriers every 500ms per player
+    private static final long BARRIER_FULL_REFRESH_INTERVAL = 5000; // Re-evaluate the whole window every 5 seconds
+    private static final int BARRIER_BELOW_OFFSET = 2;
+    private static final int SAFE_LOCATION_SEARCH_RADIUS = 10;
 
-    // Pre-computed region managers for performance
-    private final Map<String, RegionManager> regionManagerCache = new ConcurrentHashMap<>();
-    private final RegionQuery regionQuery;
-
-    private static class SafeZoneInfo {
-        final boolean isSafeZone;
-        final boolean hasRegions;
-        final long timestamp;
-
-        SafeZoneInfo(boolean isSafeZone, boolean hasRegions) {
-            this.isSafeZone = isSafeZone;
-            this.hasRegions = hasRegions;
-            this.timestamp = System.currentTimeMillis();
-        }
-
-        boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > CACHE_TTL;
-        }
-    }
+    // WorldGuard commands that can change regions or reload them
+    private static final Set<String> REGION_COMMANDS = Set.of("rg", "region", "regions", "wg", "worldguard");
 
     private static class PearlLocationData {
         final Location location;
@@ -104,12 +94,18 @@ public class WorldGuardHook implements Listener {
         }
     }
 
-    public WorldGuardHook(CelestCombat plugin, CombatManager combatManager) {
+    public WorldGuardHook(CelestCombat plugin, CombatManager combatManager, FakeBlockOverlay overlay,
+                          WorldBorderBarrier worldBorderBarrier) {
         this.plugin = plugin;
         this.combatManager = combatManager;
+        this.overlay = overlay;
+        this.overlayLayer = overlay.registerLayer();
+        this.worldBorderBarrier = worldBorderBarrier;
 
         // Pre-initialize region query for better performance
-        this.regionQuery = WorldGuard.getInstance().getPlatform().getRegionContainer().createQuery();
+        RegionQuery regionQuery = WorldGuard.getInstance().getPlatform().getRegionContainer().createQuery();
+        this.safeZoneIndex = new SafeZoneIndex(plugin, regionQuery);
+        this.regionChangeWatcher = new RegionChangeWatcher(plugin, safeZoneIndex, this::isEnabledInWorld);
 
         reloadConfig();
         startCleanupTask();
@@ -122,11 +118,11 @@ public class WorldGuardHook implements Listener {
         this.barrierHeight = plugin.getConfig().getInt("safezone_protection.barrier_height", 3);
         this.barrierMaterial = loadBarrierMaterial();
         this.pushBackForce = plugin.getConfig().getDouble("safezone_protection.push_back_force", 0.6);
+        this.renderMode = BarrierRenderMode.load(plugin, "safezone_protection.barrier_render_mode");
 
-        // Clear caches when config reloads
-        safeZoneCache.clear();
-        regionCheckCache.clear();
-        regionManagerCache.clear();
+        // Clear caches when config reloads, chunks are indexed again as they are queried
+        safeZoneIndex.clear();
+        regionChangeWatcher.checkSoon();
 
         plugin.debug("WorldGuard safezone protection - Global enabled: " + globalEnabled);
         plugin.debug("WorldGuard safezone protection - World settings: " + worldSettings);
@@ -245,48 +241,49 @@ public class WorldGuardHook implements Listener {
     }
 
     private void handleFailedTeleport(Player player, Location originalLocation) {
-        Location safeLocation = findSafeLocation(originalLocation);
-        if (safeLocation != null) {
-            player.teleportAsync(safeLocation);
-            sendCooldownMessage(player, "combat_no_pearl_safezone");
-        } else {
-            player.setHealth(0);
-            plugin.getLogger().warning("Killed player " + player.getName() + " as no safe location could be found");
-            sendCooldownMessage(player, "combat_killed_no_safe_location");
-        }
-    }
-
-    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
-    public void onPlayerMove(PlayerMoveEvent event) {
-        if (!CelestCombat.hasWorldGuard) return;
+        // Search off the main thread, then act on the player's own thread
+        findSafeLocation(originalLocation).whenComplete((safeLocation, error) -> {
+            if (error != null) {
+                plugin.getLogger().warning("Error searching a safe location: " + error.getMessage());
+            }
 
-        Player player = event.getPlayer();
+            Scheduler.runEntityTask(player, () -> {
+                if (!player.isOnline()) return;
 
-        // Check if enabled in this world
-        if (!isEnabledInWorld(player.getWorld())) {
-            removePlayerBarriers(player);
-            return;
-        }
+                if (safeLocation != null) {
+                    player.teleportAsync(safeLocation);
+                    sendCooldownMessage(player, "combat_no_pearl_safezone");
+                } else {
+                    player.setHealth(0);
+                    plugin.getLogger().warning("Killed player " + player.getName() + " as no safe location could be found");
+                    sendCooldownMessage(player, "combat_killed_no_safe_location");
+                }
+            });
+        });
+    }
 
-        if (!combatManager.isInCombat(player)) {
-            removePlayerBarriers(player);
-            return;
-        }
+    @Override
+    public boolean isEnabledIn(World world) {
+        return isEnabledInWorld(world);
+    }
 
-        Location from = event.getFrom();
-        Location to = event.getTo();
+    @Override
+    public void onMovementStopped(Player player) {
+        removePlayerBarriers(player);
+    }
 
-        if (to == null || (from.getBlockX() == to.getBlockX() &&
-                from.getBlockY() == to.getBlockY() &&
-                from.getBlockZ() == to.getBlockZ())) {
-            return;
-        }
+    @Override
+    public void onMove(MovementContext context) {
+        // World, combat and block change checks are done once by the movement listener
+        Player player = context.getPlayer();
+        Location from = context.getFrom();
+        Location to = context.getTo();
 
-        // Batch safezone checks to reduce WorldGuard API calls
-        SafeZoneInfo fromInfo = getSafeZoneInfo(from);
-        SafeZoneInfo toInfo = getSafeZoneInfo(to);
+        // Block coordinates come pre-computed with the move
+        boolean fromSafe = isSafeZone(from.getWorld(), context.getFromX(), context.getFromY(), context.getFromZ());
+        boolean toSafe = isSafeZone(context.getWorld(), context.getToX(), context.getToY(), context.getToZ());
 
-        if (!fromInfo.isSafeZone && toInfo.isSafeZone) {
+        if (!fromSafe && toSafe) {
             pushPlayerBack(player, from, to);
             sendCooldownMessage(player, "combat_no_safezone_entry");
         }
@@ -328,45 +325,60 @@ public class WorldGuardHook implements Listener {
         if (event.getClickedBlock() == null) return;
 
         Location blockLoc = event.getClickedBlock().getLocation();
-        Set<Location> playerBarrierSet = playerBarriers.get(player.getUniqueId());
-
-        if (playerBarrierSet != null && containsBlockLocation(playerBarrierSet, blockLoc)) {
+        if (overlay.isShown(player, overlayLayer, blockLoc)) {
             event.setCancelled(true);
-            Scheduler.runTaskLater(() -> refreshBarrierBlock(blockLoc, player), 1L);
+            Scheduler.runEntityTaskLater(player, () -> overlay.refresh(player, blockLoc), 1L);
         }
     }
 
-    private boolean containsBlockLocation(Set<Location> locations, Location blockLoc) {
-        Location normalizedBlockLoc = normalizeToBlockLocation(blockLoc);
-        for (Location loc : locations) {
-            if (normalizeToBlockLocation(loc).equals(normalizedBlockLoc)) {
-                return true;
-            }
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        // Check if enabled in this world
+        if (!isEnabledInWorld(event.getBlock().getWorld())) return;
+
+        if (overlay.isShown(event.getPlayer(), overlayLayer, event.getBlock().getLocation())) {
+            event.setCancelled(true);
         }
-        return false;
     }
 
-    private Location normalizeToBlockLocation(Location loc) {
-        return new Location(loc.getWorld(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        World world = event.getWorld();
+        if (!isEnabledInWorld(world)) return;
+
+        safeZoneIndex.loadChunk(world, event.getChunk().getX(), event.getChunk().getZ());
     }
 
-    private void refreshBarrierBlock(Location loc, Player player) {
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-        Set<UUID> viewers = barrierViewers.get(normalizedLoc);
-        if (viewers != null && viewers.contains(player.getUniqueId())) {
-            player.sendBlockChange(normalizedLoc, barrierMaterial.createBlockData());
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        safeZoneIndex.unloadChunk(event.getWorld(), event.getChunk().getX(), event.getChunk().getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        safeZoneIndex.unloadWorld(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        if (isRegionCommand(event.getMessage().substring(1))) {
+            regionChangeWatcher.scheduleCheck();
         }
     }
 
-    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
-    public void onBlockBreak(BlockBreakEvent event) {
-        // Check if enabled in this world
-        if (!isEnabledInWorld(event.getBlock().getWorld())) return;
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onServerCommand(ServerCommandEvent event) {
+        if (isRegionCommand(event.getCommand())) {
+            regionChangeWatcher.scheduleCheck();
+        }
+    }
 
-        Location blockLoc = normalizeToBlockLocation(event.getBlock().getLocation());
-        if (originalBlocks.containsKey(blockLoc)) {
-            event.setCancelled(true);
+    private boolean isRegionCommand(String command) {
+        String label = command.split(" ", 2)[0].toLowerCase();
+        if (label.startsWith("worldguard:")) {
+            label = label.substring("worldguard:".length());
         }
+        return REGION_COMMANDS.contains(label);
     }
 
     @EventHandler
@@ -421,32 +433,111 @@ public class WorldGuardHook implements Listener {
             return;
         }
 
-        Set<Location> newBarriers = findNearbyBarrierLocations(player.getLocation());
-        Set<Location> currentBarriers = playerBarriers.getOrDefault(player.getUniqueId(), new HashSet<>());
+        Location playerLoc = player.getLocation();
+        World world = playerLoc.getWorld();
+        int x = playerLoc.getBlockX();
+        int y = playerLoc.getBlockY();
+        int z = playerLoc.getBlockZ();
 
-        Set<Location> toRemove = new HashSet<>(currentBarriers);
-        toRemove.removeAll(newBarriers);
-        for (Location loc : toRemove) {
-            removeBarrierBlock(loc, player);
+        if (renderMode == BarrierRenderMode.WORLD_BORDER && showWorldBorder(player, world, x, y, z)) {
+            removeBlockBarriers(player);
+            return;
         }
+        worldBorderBarrier.hide(player, overlayLayer);
+
+        // Start over when the player changed worlds or the window size changed
+        BarrierWindow window = barrierWindows.get(player.getUniqueId());
+        if (window != null && !window.matches(world.getUID(), barrierDetectionRadius, BARRIER_BELOW_OFFSET, barrierHeight)) {
+            removePlayerBarriers(player);
+            window = null;
+        }
+        if (window == null) {
+            window = new BarrierWindow(world.getUID(), barrierDetectionRadius, BARRIER_BELOW_OFFSET, barrierHeight, x, y, z);
+            barrierWindows.put(player.getUniqueId(), window);
+        }
+
+        long currentTime = System.currentTimeMillis();
+        BlockChangeBatch changes = new BlockChangeBatch();
+        synchronized (window) {
+            // A teleport would make sliding walk every row in between, refill the window instead
+            if (currentTime - window.getLastFullRefresh() > BARRIER_FULL_REFRESH_INTERVAL || window.isDisjointFrom(x, y, z)) {
+                refreshBarrierWindow(player, world, window, x, y, z, changes);
+                window.markFullRefresh(currentTime);
+                changes.send(player);
+                return;
+            }
+
+            // Only the blocks sliding in and out of the window can change
+            window.moveTo(x, y, z,
+                    (bx, by, bz) -> overlay.hide(player, overlayLayer, world, bx, by, bz, changes),
+                    (bx, by, bz) -> {
+                        if (isBorderLocation(world, bx, by, bz)) {
+                            overlay.show(player, overlayLayer, world, bx, by, bz, barrierMaterial, changes);
+                        }
+                    });
+        }
+        changes.send(player);
+    }
+
+    /**
+     * Shows the barrier as a world border when the only region near the player is a cuboid
+     *
+     * @return False if the barrier has to be shown with blocks
+     */
+    private boolean showWorldBorder(Player player, World world, int x, int y, int z) {
+        int radius = barrierDetectionRadius;
+        int minY = y - BARRIER_BELOW_OFFSET;
+        int maxY = y + barrierHeight;
+        List<ProtectedRegion> regions = safeZoneIndex.getRegionsNear(world, x - radius, minY, z - radius,
+                x + radius, maxY, z + radius);
 
-        Set<Location> toAdd = new HashSet<>(newBarriers);
-        toAdd.removeAll(currentBarriers);
-        for (Location loc : toAdd) {
-            createBarrierBlock(loc, player);
+        if (regions.isEmpty()) {
+            // Nothing to show
+            worldBorderBarrier.hide(player, overlayLayer);
+            return true;
         }
+        if (regions.size() != 1 || !(regions.get(0) instanceof ProtectedCuboidRegion region)) return false;
+
+        // The border has no height, so the region has to cover all of the barrier rows
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        if (min.y() > minY || max.y() < maxY) return false;
 
-        if (newBarriers.isEmpty()) {
-            playerBarriers.remove(player.getUniqueId());
-        } else {
-            playerBarriers.put(player.getUniqueId(), newBarriers);
+        // Regions that allow PvP need no wall
+        int insideX = Math.max(min.x(), Math.min(x, max.x()));
+        int insideZ = Math.max(min.z(), Math.min(z, max.z()));
+        if (!isSafeZone(world, insideX, y, insideZ)) {
+            worldBorderBarrier.hide(player, overlayLayer);
+            return true;
         }
+
+        return worldBorderBarrier.show(player, overlayLayer, min.x(), min.z(), max.x(), max.z());
     }
 
-    private Set<Location> findNearbyBarrierLocations(Location playerLoc) {
-        Set<Location> barrierLocations = new HashSet<>();
+    /**
+     * Re-evaluates the whole window, picking up region changes inside it. Blocks of the
+     * old window that are not barriers anymore are hidden when the layer is replaced.
+     */
+    private void refreshBarrierWindow(Player player, World world, BarrierWindow window, int x, int y, int z,
+                                      BlockChangeBatch changes) {
+        window.recenter(x, y, z);
+        overlay.replaceLayer(player, overlayLayer, world, findNearbyBarrierLocations(world, x, y, z), barrierMaterial, changes);
+    }
+
+    private PackedBlockSet findNearbyBarrierLocations(World world, int baseX, int baseY, int baseZ) {
+        PackedBlockSet barrierLocations = new PackedBlockSet();
         int radius = barrierDetectionRadius;
 
+        // Only look at blocks along the region edges crossing the detection area
+        PackedBlockSet checked = new PackedBlockSet();
+        boolean fromEdges = safeZoneIndex.forEachEdge(world, baseX - radius - 1, baseZ - radius - 1,
+                baseX + radius + 1, baseZ + radius + 1, (x1, z1, x2, z2, edgeMinY, edgeMaxY) ->
+                        addEdgeBarriers(world, baseX, baseY, baseZ, x1, z1, x2, z2, edgeMinY, edgeMaxY, checked, barrierLocations));
+        if (fromEdges) {
+            return barrierLocations;
+        }
+
+        // Edges not known here yet, scan the whole area
         // Pre-calculate radius squared for faster distance checks
         double radiusSquared = radius * radius;
 
@@ -455,11 +546,9 @@ public class WorldGuardHook implements Listener {
                 // Fast distance check using squared distance
                 if (x * x + z * z > radiusSquared) continue;
 
-                for (int y = -2; y <= barrierHeight; y++) {
-                    Location checkLoc = playerLoc.clone().add(x, y, z);
-
-                    if (isBorderLocation(checkLoc)) {
-                        barrierLocations.add(normalizeToBlockLocation(checkLoc));
+                for (int y = -BARRIER_BELOW_OFFSET; y <= barrierHeight; y++) {
+                    if (isBorderLocation(world, baseX + x, baseY + y, baseZ + z)) {
+                        barrierLocations.add(BlockKeys.pack(baseX + x, baseY + y, baseZ + z));
                     }
                 }
             }
@@ -468,62 +557,65 @@ public class WorldGuardHook implements Listener {
         return barrierLocations;
     }
 
-    private boolean isBorderLocation(Location loc) {
-        SafeZoneInfo info = getSafeZoneInfo(loc);
-        if (!info.isSafeZone) return false;
-
-        // Check adjacent blocks - use optimized direction array
-        int[][] directions = {{1,0,0}, {-1,0,0}, {0,0,1}, {0,0,-1}};
-
-        for (int[] dir : directions) {
-            Location adjacent = loc.clone().add(dir[0], dir[1], dir[2]);
-            if (!getSafeZoneInfo(adjacent).isSafeZone) {
-                return true;
+    /**
+     * Checks the blocks along one region edge, within the detection area around the player
+     */
+    private void addEdgeBarriers(World world, int baseX, int baseY, int baseZ, int x1, int z1, int x2, int z2,
+                                 int edgeMinY, int edgeMaxY, PackedBlockSet checked, PackedBlockSet barrierLocations) {
+        int radius = barrierDetectionRadius;
+        int minY = Math.max(baseY - BARRIER_BELOW_OFFSET, edgeMinY);
+        int maxY = Math.min(baseY + barrierHeight, edgeMaxY);
+        if (minY > maxY) return;
+
+        // Walk the edge along its longer axis, clipped to the detection area
+        int dx = x2 - x1;
+        int dz = z2 - z1;
+        boolean alongX = Math.abs(dx) >= Math.abs(dz);
+        int from = alongX ? Math.max(Math.min(x1, x2), baseX - radius - 1) : Math.max(Math.min(z1, z2), baseZ - radius - 1);
+        int to = alongX ? Math.min(Math.max(x1, x2), baseX + radius + 1) : Math.min(Math.max(z1, z2), baseZ + radius + 1);
+
+        for (int step = from; step <= to; step++) {
+            int edgeX = alongX ? step : x1 + (int) Math.round((double) (step - z1) * dx / dz);
+            int edgeZ = alongX ? (dx == 0 ? z1 : z1 + (int) Math.round((double) (step - x1) * dz / dx)) : step;
+
+            // Borders lie on the edge or one block next to it
+            for (int offsetX = -1; offsetX <= 1; offsetX++) {
+                for (int offsetZ = -1; offsetZ <= 1; offsetZ++) {
+                    int x = edgeX + offsetX;
+                    int z = edgeZ + offsetZ;
+                    int relX = x - baseX;
+                    int relZ = z - baseZ;
+                    if (relX * relX + relZ * relZ > radius * radius) continue;
+
+                    for (int y = minY; y <= maxY; y++) {
+                        long key = BlockKeys.pack(x, y, z);
+                        if (checked.add(key) && isBorderLocation(world, x, y, z)) {
+                            barrierLocations.add(key);
+                        }
+                    }
+                }
             }
         }
-
-        return false;
     }
 
-    private void createBarrierBlock(Location loc, Player player) {
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-        Block block = normalizedLoc.getBlock();
-
-        if (block.getType() != Material.AIR && block.getType().isSolid()) return;
+    private boolean isBorderLocation(World world, int x, int y, int z) {
+        if (!isSafeZone(world, x, y, z)) return false;
 
-        originalBlocks.put(normalizedLoc, block.getType());
-        barrierViewers.computeIfAbsent(normalizedLoc, k -> new HashSet<>()).add(player.getUniqueId());
-        player.sendBlockChange(normalizedLoc, barrierMaterial.createBlockData());
+        // A safe zone block next to a non safe zone block is on the border
+        return !isSafeZone(world, x + 1, y, z)
+                || !isSafeZone(world, x - 1, y, z)
+                || !isSafeZone(world, x, y, z + 1)
+                || !isSafeZone(world, x, y, z - 1);
     }
 
-    private void removeBarrierBlock(Location loc, Player player) {
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-        Set<UUID> viewers = barrierViewers.get(normalizedLoc);
-
-        if (viewers != null) {
-            viewers.remove(player.getUniqueId());
-
-            if (viewers.isEmpty()) {
-                barrierViewers.remove(normalizedLoc);
-                Material originalType = originalBlocks.remove(normalizedLoc);
-                if (originalType != null) {
-                    player.sendBlockChange(normalizedLoc, originalType.createBlockData());
-                }
-            } else {
-                Material originalType = originalBlocks.get(normalizedLoc);
-                if (originalType != null) {
-                    player.sendBlockChange(normalizedLoc, originalType.createBlockData());
-                }
-            }
-        }
+    private void removePlayerBarriers(Player player) {
+        worldBorderBarrier.hide(player, overlayLayer);
+        removeBlockBarriers(player);
     }
 
-    private void removePlayerBarriers(Player player) {
-        Set<Location> barriers = playerBarriers.remove(player.getUniqueId());
-        if (barriers != null) {
-            for (Location loc : barriers) {
-                removeBarrierBlock(loc, player);
-            }
+    private void removeBlockBarriers(Player player) {
+        if (barrierWindows.remove(player.getUniqueId()) != null) {
+            overlay.clearLayer(player, overlayLayer);
         }
     }
 
@@ -534,26 +626,22 @@ public class WorldGuardHook implements Listener {
             cleanupPlayerBarriers();
             cleanupExpiredPearlLocations();
             cleanupMessageCooldowns(currentTime);
-            cleanupCaches(currentTime);
+            checkRegionChanges();
 
         }, 100L, 100L);
     }
 
     private void cleanupPlayerBarriers() {
-        playerBarriers.entrySet().removeIf(entry -> {
-            UUID playerUUID = entry.getKey();
-            Player player = plugin.getServer().getPlayer(playerUUID);
+        worldBorderBarrier.hideWhere(overlayLayer, player ->
+                !combatManager.isInCombat(player) || !isEnabledInWorld(player.getWorld()));
+
+        barrierWindows.entrySet().removeIf(entry -> {
+            Player player = plugin.getServer().getPlayer(entry.getKey());
 
             if (player == null || !player.isOnline() || !combatManager.isInCombat(player) || !isEnabledInWorld(player.getWorld())) {
-                Set<Location> barriers = entry.getValue();
+                // The overlay forgets offline players by itself
                 if (player != null && player.isOnline()) {
-                    for (Location loc : barriers) {
-                        removeBarrierBlock(loc, player);
-                    }
-                } else {
-                    for (Location loc : barriers) {
-                        cleanupOfflinePlayerBarrier(loc, playerUUID);
-                    }
+                    overlay.clearLayer(player, overlayLayer);
                 }
                 return true;
             }
@@ -561,18 +649,6 @@ public class WorldGuardHook implements Listener {
         });
     }
 
-    private void cleanupOfflinePlayerBarrier(Location loc, UUID playerUUID) {
-        Location normalizedLoc = normalizeToBlockLocation(loc);
-        Set<UUID> viewers = barrierViewers.get(normalizedLoc);
-        if (viewers != null) {
-            viewers.remove(playerUUID);
-            if (viewers.isEmpty()) {
-                barrierViewers.remove(normalizedLoc);
-                originalBlocks.remove(normalizedLoc);
-            }
-        }
-    }
-
     private void cleanupExpiredPearlLocations() {
         pearlThrowLocations.entrySet().removeIf(entry -> entry.getValue().isExpired());
     }
@@ -582,97 +658,74 @@ public class WorldGuardHook implements Listener {
                 currentTime - entry.getValue() > MESSAGE_COOLDOWN * 10);
     }
 
-    private void cleanupCaches(long currentTime) {
-        if (currentTime - lastCacheClean > CACHE_CLEAN_INTERVAL) {
-            // Clean expired entries from safezone cache
-            safeZoneCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-
-            // Clean region check cache
-            regionCheckCache.entrySet().removeIf(entry ->
-                    currentTime - entry.getValue() > CACHE_TTL);
-
-            // Limit cache size
-            if (safeZoneCache.size() > MAX_CACHE_SIZE) {
-                safeZoneCache.clear();
-            }
-            if (regionCheckCache.size() > MAX_CACHE_SIZE) {
-                regionCheckCache.clear();
-            }
-
-            lastCacheClean = currentTime;
-        }
+    private void checkRegionChanges() {
+        // Region commands are checked right away, this picks up edits made through the API.
+        // The worlds are only listed on the main thread, the regions are compared in the background.
+        Scheduler.runTask(regionChangeWatcher::sweepSoon);
     }
 
-    // Optimized safezone checking with enhanced caching
-    private SafeZoneInfo getSafeZoneInfo(Location location) {
-        if (location == null) return new SafeZoneInfo(false, false);
-
-        String cacheKey = location.getWorld().getName() + ":" +
-                location.getBlockX() + ":" +
-                location.getBlockY() + ":" +
-                location.getBlockZ();
+    // Safezone checking backed by the chunk section bitmaps
+    private boolean isSafeZone(World world, int x, int y, int z) {
+        if (world == null) return false;
 
-        SafeZoneInfo cached = safeZoneCache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
-            return cached;
+        int indexed = safeZoneIndex.lookup(world, x, y, z);
+        if (indexed != SafeZoneIndex.UNKNOWN) {
+            return indexed == 1;
         }
 
-        try {
-            // Get or cache region manager
-            String worldName = location.getWorld().getName();
-            RegionManager regionManager = regionManagerCache.get(worldName);
-            if (regionManager == null) {
-                regionManager = WorldGuard.getInstance().getPlatform()
-                        .getRegionContainer().get(BukkitAdapter.adapt(location.getWorld()));
-                if (regionManager != null) {
-                    regionManagerCache.put(worldName, regionManager);
-                }
-            }
-
-            boolean hasRegions = false;
-            boolean isSafeZone = false;
-
-            if (regionManager != null) {
-                BlockVector3 pos = BlockVector3.at(location.getX(), location.getY(), location.getZ());
-                ApplicableRegionSet regions = regionManager.getApplicableRegions(pos);
-                hasRegions = !regions.getRegions().isEmpty();
-
-                if (hasRegions) {
-                    // Use pre-initialized region query for better performance
-                    com.sk89q.worldedit.util.Location worldGuardLoc = BukkitAdapter.adapt(location);
-                    boolean pvpAllowed = regionQuery.testState(worldGuardLoc, null, Flags.PVP);
-                    isSafeZone = !pvpAllowed;
-                }
-            }
-
-            SafeZoneInfo info = new SafeZoneInfo(isSafeZone, hasRegions);
-            safeZoneCache.put(cacheKey, info);
-            return info;
-
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error checking WorldGuard: " + e.getMessage());
-            return new SafeZoneInfo(false, false);
+        // Not indexed yet, index the chunk if it is loaded and ask WorldGuard directly meanwhile
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            safeZoneIndex.loadChunk(world, chunkX, chunkZ);
         }
+        return safeZoneIndex.isPvpDenied(world, x, y, z);
     }
 
     private boolean isSafeZone(Location location) {
-        return getSafeZoneInfo(location).isSafeZone;
+        if (location == null) return false;
+        return isSafeZone(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
 
-    private Location findSafeLocation(Location location) {
-        if (location == null) return null;
+    /**
+     * Searches a safe spot around a location. Snapshots of the surrounding chunks are
+     * taken by the threads that own them and searched asynchronously.
+     *
+     * @return The safe location, or null if there is none within the search radius
+     */
+    private CompletableFuture<Location> findSafeLocation(Location location) {
+        if (location == null || location.getWorld() == null) return CompletableFuture.completedFuture(null);
+
+        World world = location.getWorld();
+        int baseX = location.getBlockX();
+        int baseZ = location.getBlockZ();
+
+        Map<Long, CompletableFuture<ChunkSnapshot>> snapshots = new HashMap<>();
+        for (int chunkX = (baseX - SAFE_LOCATION_SEARCH_RADIUS) >> 4; chunkX <= (baseX + SAFE_LOCATION_SEARCH_RADIUS) >> 4; chunkX++) {
+            for (int chunkZ = (baseZ - SAFE_LOCATION_SEARCH_RADIUS) >> 4; chunkZ <= (baseZ + SAFE_LOCATION_SEARCH_RADIUS) >> 4; chunkZ++) {
+                // Chunks that were never generated have no safe spot, they stay without a snapshot
+                snapshots.put(chunkKey(chunkX, chunkZ), world.getChunkAtAsync(chunkX, chunkZ, false)
+                        .thenApply(chunk -> chunk != null ? chunk.getChunkSnapshot(false, false, false) : null));
+            }
+        }
+
+        return CompletableFuture.allOf(snapshots.values().toArray(new CompletableFuture[0]))
+                .thenCompose(ignored -> Scheduler.supplyAsync(() -> {
+                    Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+                    snapshots.forEach((key, snapshot) -> chunks.put(key, snapshot.join()));
+                    return searchSafeLocation(location, chunks);
+                }));
+    }
 
-        int searchRadius = 10;
+    private Location searchSafeLocation(Location location, Map<Long, ChunkSnapshot> chunks) {
+        int searchRadius = SAFE_LOCATION_SEARCH_RADIUS;
 
-        if (isLocationSafe(location)) return location;
+        if (isLocationSafe(location, chunks, 0, 0, 0)) return location;
 
         // Check above and below first (most common solutions)
         for (int y = 1; y <= searchRadius; y++) {
-            Location above = location.clone().add(0, y, 0);
-            if (isLocationSafe(above)) return above;
-
-            Location below = location.clone().add(0, -y, 0);
-            if (isLocationSafe(below)) return below;
+            if (isLocationSafe(location, chunks, 0, y, 0)) return location.clone().add(0, y, 0);
+            if (isLocationSafe(location, chunks, 0, -y, 0)) return location.clone().add(0, -y, 0);
         }
 
         // Spiral search pattern
@@ -682,8 +735,7 @@ public class WorldGuardHook implements Listener {
                     if (Math.abs(x) < distance && Math.abs(z) < distance) continue;
 
                     for (int y = -distance; y <= distance; y++) {
-                        Location checkLoc = location.clone().add(x, y, z);
-                        if (isLocationSafe(checkLoc)) return checkLoc;
+                        if (isLocationSafe(location, chunks, x, y, z)) return location.clone().add(x, y, z);
                     }
                 }
             }
@@ -692,18 +744,32 @@ public class WorldGuardHook implements Listener {
         return null;
     }
 
-    private boolean isLocationSafe(Location location) {
-        if (location == null) return false;
+    // Checks the spot at an offset from a location, reading blocks from the chunk snapshots
+    private boolean isLocationSafe(Location location, Map<Long, ChunkSnapshot> chunks, int offsetX, int offsetY, int offsetZ) {
+        World world = location.getWorld();
+        int x = location.getBlockX() + offsetX;
+        int y = location.getBlockY() + offsetY;
+        int z = location.getBlockZ() + offsetZ;
+        if (y - 1 < world.getMinHeight() || y + 1 >= world.getMaxHeight()) return false;
+
+        ChunkSnapshot chunk = chunks.get(chunkKey(x >> 4, z >> 4));
+        if (chunk == null) return false;
 
-        if (isSafeZone(location)) return false;
+        Material feet = chunk.getBlockType(x & 15, y, z & 15);
+        Material head = chunk.getBlockType(x & 15, y + 1, z & 15);
+        Material ground = chunk.getBlockType(x & 15, y - 1, z & 15);
+        if (feet.isSolid() || head.isSolid() || !ground.isSolid()) return false;
 
-        Block feet = location.getBlock();
-        Block head = location.clone().add(0, 1, 0).getBlock();
-        Block ground = location.clone().add(0, -1, 0).getBlock();
+        // Only the index and WorldGuard itself are safe to use off the main thread
+        int indexed = safeZoneIndex.lookup(world, x, y, z);
+        if (indexed != SafeZoneIndex.UNKNOWN) {
+            return indexed == 0;
+        }
+        return !safeZoneIndex.isPvpDenied(world, x, y, z);
+    }
 
-        return (feet.getType() == Material.AIR || !feet.getType().isSolid())
-                && (head.getType() == Material.AIR || !head.getType().isSolid())
-                && ground.getType().isSolid();
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
     }
 
     private void sendCooldownMessage(Player player, String messageKey) {
@@ -743,13 +809,12 @@ public class WorldGuardHook implements Listener {
     public void cleanup() {
         combatPlayerPearls.clear();
         pearlThrowLocations.clear();
-        playerBarriers.clear();
-        originalBlocks.clear();
-        barrierViewers.clear();
+        barrierWindows.clear();
+        overlay.clearLayer(overlayLayer);
+        worldBorderBarrier.hideAll(overlayLayer);
         lastMessageTime.clear();
-        safeZoneCache.clear();
-        regionCheckCache.clear();
-        regionManagerCache.clear();
+        safeZoneIndex.clear();
+        regionChangeWatcher.clear();
         lastBarrierUpdate.clear();
         worldSettings.clear();
     }
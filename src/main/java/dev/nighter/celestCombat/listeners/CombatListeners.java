@@ -1,7 +1,10 @@
 package dev.nighter.celestCombat.listeners;
 
 import dev.nighter.celestCombat.CelestCombat;
+import dev.nighter.celestCombat.Scheduler;
 import dev.nighter.celestCombat.combat.CombatManager;
+import dev.nighter.celestCombat.combat.DamageLedger;
+import dev.nighter.celestCombat.combat.DamageTracker;
 import dev.nighter.celestCombat.combat.DeathAnimationManager;
 import dev.nighter.celestCombat.language.MessageService;
 import dev.nighter.celestCombat.protection.NewbieProtectionManager;
@@ -14,14 +17,15 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerKickEvent;
 import org.bukkit.event.player.PlayerToggleFlightEvent;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -36,12 +40,13 @@ public class CombatListeners implements Listener {
     private MessageService messageService;
 
     private final Map<UUID, Boolean> playerLoggedOutInCombat = new ConcurrentHashMap<>();
-    // Add a map to track the last damage source for each player
-    private final Map<UUID, UUID> lastDamageSource = new ConcurrentHashMap<>();
-    // Add a map to cleanup stale damage records
-    private final Map<UUID, Long> lastDamageTime = new ConcurrentHashMap<>();
+    private static final int DAMAGE_LEDGER_CAPACITY = 8;
     // Cleanup threshold (5 minutes)
     private static final long DAMAGE_RECORD_CLEANUP_THRESHOLD = TimeUnit.MINUTES.toMillis(5);
+    // Recent attackers of each player with the damage they dealt
+    private final DamageTracker damageTracker = new DamageTracker(DAMAGE_LEDGER_CAPACITY, DAMAGE_RECORD_CLEANUP_THRESHOLD);
+    private Scheduler.Task damageCleanupTask;
+    private static final long DAMAGE_CLEANUP_INTERVAL = 20L; // 1 second in ticks
 
     public CombatListeners(CelestCombat plugin) {
         this.plugin = plugin;
@@ -50,6 +55,10 @@ public class CombatListeners implements Listener {
         this.killRewardManager = plugin.getKillRewardManager();
         this.deathAnimationManager = plugin.getDeathAnimationManager();
         this.messageService = plugin.getMessageService();
+
+        // Drain expired damage records in the background instead of on every hit
+        this.damageCleanupTask = Scheduler.runTaskTimerAsync(this::cleanupStaleDamageRecords,
+                DAMAGE_CLEANUP_INTERVAL, DAMAGE_CLEANUP_INTERVAL);
     }
 
     /**
@@ -118,31 +127,43 @@ public class CombatListeners implements Listener {
         // Continue with normal combat logic if damage wasn't blocked
         if (attacker != null && victim != null && !attacker.equals(victim)) {
             // Track this as the most recent damage source
-            lastDamageSource.put(victim.getUniqueId(), attacker.getUniqueId());
-            lastDamageTime.put(victim.getUniqueId(), System.currentTimeMillis());
-
-            // Combat tag both players
-            combatManager.tagPlayer(attacker, victim);
-            combatManager.tagPlayer(victim, attacker);
+            damageTracker.recordHit(victim.getUniqueId(), attacker.getUniqueId(), event.getFinalDamage(), System.currentTimeMillis());
 
-            // Perform cleanup of stale records
-            cleanupStaleDamageRecords();
+            // Combat tag both players, coalesced to once per tick
+            combatManager.queueCombatTag(attacker, victim);
+            combatManager.queueCombatTag(victim, attacker);
         }
     }
 
     private void cleanupStaleDamageRecords() {
-        long currentTime = System.currentTimeMillis();
-        lastDamageTime.entrySet().removeIf(entry ->
-                (currentTime - entry.getValue()) > DAMAGE_RECORD_CLEANUP_THRESHOLD);
+        damageTracker.removeExpired(System.currentTimeMillis());
+    }
+
+    // Runs off the main thread, so the player's stored data is read before they join
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        newbieProtectionManager.loadPlayer(event.getUniqueId());
+        killRewardManager.loadPlayer(event.getUniqueId());
+    }
+
+    // A login refused after the data was loaded never gets a quit event
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() == PlayerLoginEvent.Result.ALLOWED) return;
 
-        // Also clean up damage sources for players that don't have a timestamp anymore
-        lastDamageSource.keySet().removeIf(uuid -> !lastDamageTime.containsKey(uuid));
+        newbieProtectionManager.unloadPlayer(event.getPlayer().getUniqueId());
+        killRewardManager.unloadPlayer(event.getPlayer().getUniqueId());
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
 
+        // Apply hits from this tick before deciding if this is a combat log
+        combatManager.flushPendingTag(player);
+
         // Handle newbie protection cleanup
         newbieProtectionManager.handlePlayerQuit(player);
 
@@ -155,6 +176,12 @@ public class CombatListeners implements Listener {
         } else {
             playerLoggedOutInCombat.put(player.getUniqueId(), false);
         }
+
+        // Drop all per-player combat state
+        combatManager.removeSession(player);
+
+        // Stored data is evicted from memory a while after the player left
+        killRewardManager.unloadPlayer(player.getUniqueId());
     }
 
     // Add a listener for PlayerKickEvent to track admin kicks
@@ -162,12 +189,15 @@ public class CombatListeners implements Listener {
     public void onPlayerKick(PlayerKickEvent event) {
         Player player = event.getPlayer();
 
+        // Apply hits from this tick before deciding if this is a combat log
+        combatManager.flushPendingTag(player);
+
         // Handle newbie protection cleanup
         newbieProtectionManager.handlePlayerQuit(player);
 
         if (combatManager.isInCombat(player)) {
             // Check if exempt_admin_kick is enabled and this was an admin kick
-            if (plugin.getConfig().getBoolean("combat.exempt_admin_kick", true)) {
+            if (plugin.getCombatConfig().combat().exemptAdminKick()) {
 
                 // Don't punish, just remove from combat
                 Player opponent = combatManager.getCombatOpponent(player);
@@ -205,6 +235,15 @@ public class CombatListeners implements Listener {
         Player killer = victim.getKiller();
         UUID victimId = victim.getUniqueId();
 
+        // Apply the hits from this tick so the opponent is up to date
+        combatManager.flushPendingTag(victim);
+
+        // Take the damage dealt during the fight, ordered by damage
+        DamageLedger ledger = damageTracker.remove(victimId);
+        DamageLedger.Contribution[] contributions = ledger != null
+                ? ledger.getContributions(System.currentTimeMillis() - combatManager.getCombatDurationMillis())
+                : new DamageLedger.Contribution[0];
+
         // Remove newbie protection on death (if they had it)
         if (newbieProtectionManager.hasProtection(victim)) {
             newbieProtectionManager.removeProtection(victim, false);
@@ -213,8 +252,8 @@ public class CombatListeners implements Listener {
 
         // If player directly killed by another player
         if (killer != null && !killer.equals(victim)) {
-            // Execute kill reward commands using KillRewardManager
-            killRewardManager.giveKillReward(killer, victim);
+            // Execute kill reward commands for the killer and any assists
+            killRewardManager.giveKillReward(killer, victim, contributions);
 
             // Perform death animation
             deathAnimationManager.performDeathAnimation(victim, killer);
@@ -227,23 +266,15 @@ public class CombatListeners implements Listener {
         else if (combatManager.isInCombat(victim)) {
             Player opponent = combatManager.getCombatOpponent(victim);
 
-            // Check if we have an opponent or a recent damage source
-            if (opponent != null && opponent.isOnline()) {
-                // Give rewards to the combat opponent
-                killRewardManager.giveKillReward(opponent, victim);
-                deathAnimationManager.performDeathAnimation(victim, opponent);
-            } else if (lastDamageSource.containsKey(victimId)) {
-                // Try to get the last player who damaged this player
-                UUID lastAttackerUuid = lastDamageSource.get(victimId);
-                Player lastAttacker = plugin.getServer().getPlayer(lastAttackerUuid);
-
-                if (lastAttacker != null && lastAttacker.isOnline() && !lastAttacker.equals(victim)) {
-                    killRewardManager.giveKillReward(lastAttacker, victim);
-                    deathAnimationManager.performDeathAnimation(victim, lastAttacker);
-                } else {
-                    // No valid attacker found
-                    deathAnimationManager.performDeathAnimation(victim, null);
-                }
+            // Credit whoever dealt the most damage, falling back to the combat opponent
+            Player credited = findTopDamager(victim, contributions);
+            if (credited == null && opponent != null && opponent.isOnline()) {
+                credited = opponent;
+            }
+
+            if (credited != null) {
+                killRewardManager.giveKillReward(credited, victim, contributions);
+                deathAnimationManager.performDeathAnimation(victim, credited);
             } else {
                 // No attacker information available
                 deathAnimationManager.performDeathAnimation(victim, null);
@@ -254,18 +285,21 @@ public class CombatListeners implements Listener {
             if (opponent != null) {
                 combatManager.removeFromCombat(opponent);
             }
-
-            // Clean up damage tracking
-            lastDamageSource.remove(victimId);
-            lastDamageTime.remove(victimId);
         } else {
             // Player died outside of combat
             deathAnimationManager.performDeathAnimation(victim, null);
+        }
+    }
 
-            // Clean up any stale damage tracking
-            lastDamageSource.remove(victimId);
-            lastDamageTime.remove(victimId);
+    private Player findTopDamager(Player victim, DamageLedger.Contribution[] contributions) {
+        // Contributions are sorted by damage, take the first attacker still online
+        for (DamageLedger.Contribution contribution : contributions) {
+            Player attacker = plugin.getServer().getPlayer(contribution.getAttackerUUID());
+            if (attacker != null && attacker.isOnline() && !attacker.equals(victim)) {
+                return attacker;
+            }
         }
+        return null;
     }
 
     @EventHandler(priority = EventPriority.NORMAL)
@@ -273,6 +307,8 @@ public class CombatListeners implements Listener {
         Player player = event.getPlayer();
         UUID playerUUID = player.getUniqueId();
 
+        combatManager.createSession(player);
+
         // Handle newbie protection for new players
         newbieProtectionManager.handlePlayerJoin(player);
 
@@ -287,8 +323,7 @@ public class CombatListeners implements Listener {
         }
 
         // Clean up any stale damage records for this player
-        lastDamageSource.remove(playerUUID);
-        lastDamageTime.remove(playerUUID);
+        damageTracker.remove(playerUUID);
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
@@ -296,38 +331,12 @@ public class CombatListeners implements Listener {
         Player player = event.getPlayer();
 
         if (combatManager.isInCombat(player)) {
-            String command = event.getMessage().split(" ")[0].toLowerCase().substring(1);
-
-            // Get command blocking mode from config
-            String blockMode = plugin.getConfig().getString("combat.command_block_mode", "whitelist").toLowerCase();
+            String message = event.getMessage();
+            int labelEnd = message.indexOf(' ');
+            String command = (labelEnd < 0 ? message.substring(1) : message.substring(1, labelEnd)).toLowerCase();
 
-            // Determine if the command should be blocked based on the mode
-            boolean shouldBlock = false;
-
-            if ("blacklist".equalsIgnoreCase(blockMode)) {
-                // Blacklist mode - block commands in the list
-                List<String> blockedCommands = plugin.getConfig().getStringList("combat.blocked_commands");
-
-                for (String blockedCmd : blockedCommands) {
-                    if (command.equalsIgnoreCase(blockedCmd) ||
-                            (blockedCmd.endsWith("*") && command.startsWith(blockedCmd.substring(0, blockedCmd.length() - 1)))) {
-                        shouldBlock = true;
-                        break;
-                    }
-                }
-            } else {
-                // Whitelist mode - allow only commands in the list
-                List<String> allowedCommands = plugin.getConfig().getStringList("combat.allowed_commands");
-                shouldBlock = true; // Block by default
-
-                for (String allowedCmd : allowedCommands) {
-                    if (command.equalsIgnoreCase(allowedCmd) ||
-                            (allowedCmd.endsWith("*") && command.startsWith(allowedCmd.substring(0, allowedCmd.length() - 1)))) {
-                        shouldBlock = false; // Command is allowed
-                        break;
-                    }
-                }
-            }
+            // Determine if the command should be blocked based on the compiled command list
+            boolean shouldBlock = plugin.getCombatConfig().combat().commandBlockMatcher().isBlocked(command, plugin.getServer().getCommandMap());
 
             // Block the command if necessary
             if (shouldBlock) {
@@ -354,8 +363,12 @@ public class CombatListeners implements Listener {
 
     // Method to clean up any lingering data when the plugin disables
     public void shutdown() {
+        if (damageCleanupTask != null) {
+            damageCleanupTask.cancel();
+            damageCleanupTask = null;
+        }
+
         playerLoggedOutInCombat.clear();
-        lastDamageSource.clear();
-        lastDamageTime.clear();
+        damageTracker.clear();
     }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package dev.nighter.celestCombat.listeners;
+
+import dev.nighter.celestCombat.CelestCombat;
+import dev.nighter.celestCombat.Scheduler;
+import dev.nighter.celestCombat.combat.PlayerCombatSession;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Single PlayerMoveEvent handler for every feature that reacts to tagged players moving.
+ *
+ * Filters each move once (block boundary crossed, player tagged) and then fans the
+ * move out to the registered {@link MovementConsumer}s, instead of every feature
+ * repeating the same checks in its own move handler.
+ *
+ * The listener is only registered with Bukkit while at least one player is tagged,
+ * so idle servers don't pay anything for CelestCombat on player movement.
+ */
+public class CombatMovementListener implements Listener {
+    private final CelestCombat plugin;
+    private final List<MovementConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    // Players that consumers have seen moving while tagged, so they can be told when it stops
+    private final Set<UUID> activePlayers = ConcurrentHashMap.newKeySet();
+
+    // Whether the handlers are currently registered with Bukkit
+    private boolean registered;
+
+    public CombatMovementListener(CelestCombat plugin) {
+        this.plugin = plugin;
+    }
+
+    public void register(MovementConsumer consumer) {
+        if (!consumers.contains(consumer)) {
+            consumers.add(consumer);
+        }
+        refreshRegistration();
+    }
+
+    public void unregister(MovementConsumer consumer) {
+        consumers.remove(consumer);
+        refreshRegistration();
+    }
+
+    /**
+     * Registers the handlers when the first player gets tagged and unregisters them
+     * when the last tag is gone. Called by {@link dev.nighter.celestCombat.combat.CombatManager}
+     * whenever a player gains or loses a tag, the state is re-read under the lock so
+     * concurrent calls always settle on the current one.
+     */
+    public synchronized void refreshRegistration() {
+        boolean wanted = plugin.isEnabled() && !consumers.isEmpty()
+                && !plugin.getCombatManager().getPlayersInCombat().isEmpty();
+        if (wanted == registered) {
+            return;
+        }
+
+        if (wanted) {
+            plugin.getServer().getPluginManager().registerEvents(this, plugin);
+            plugin.debug("Movement listener registered, a player is in combat");
+        } else {
+            HandlerList.unregisterAll(this);
+            plugin.debug("Movement listener unregistered, nobody is in combat");
+
+            // No more move events will arrive to tell consumers, so tell them now
+            for (UUID playerUUID : activePlayers) {
+                Player player = plugin.getServer().getPlayer(playerUUID);
+                if (player != null) {
+                    Scheduler.runEntityTask(player, () -> stopAll(player));
+                }
+            }
+            activePlayers.clear();
+        }
+        registered = wanted;
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        if (consumers.isEmpty()) return;
+
+        Location from = event.getFrom();
+        Location to = event.getTo();
+
+        // Only process moves into a new block
+        int toX = to.getBlockX();
+        int toY = to.getBlockY();
+        int toZ = to.getBlockZ();
+        int fromX = from.getBlockX();
+        int fromY = from.getBlockY();
+        int fromZ = from.getBlockZ();
+        if (fromX == toX && fromY == toY && fromZ == toZ && from.getWorld() == to.getWorld()) {
+            return;
+        }
+
+        Player player = event.getPlayer();
+        PlayerCombatSession session = plugin.getCombatManager().getSession(player);
+        if (session == null || !session.isInCombat(System.currentTimeMillis())) {
+            if (activePlayers.remove(player.getUniqueId())) {
+                stopAll(player);
+            }
+            return;
+        }
+
+        activePlayers.add(player.getUniqueId());
+
+        MovementContext context = new MovementContext(player, session, from, to, fromX, fromY, fromZ, toX, toY, toZ);
+        World world = context.getWorld();
+        for (MovementConsumer consumer : consumers) {
+            if (consumer.isEnabledIn(world)) {
+                consumer.onMove(context);
+            } else {
+                consumer.onMovementStopped(player);
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        activePlayers.remove(event.getPlayer().getUniqueId());
+    }
+
+    private void stopAll(Player player) {
+        for (MovementConsumer consumer : consumers) {
+            consumer.onMovementStopped(player);
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (registered) {
+            HandlerList.unregisterAll(this);
+            registered = false;
+        }
+        activePlayers.clear();
+        consumers.clear();
+    }
+}
@@ -2,18 +2,23 @@ package dev.nighter.celestCombat.listeners;
 
 import dev.nighter.celestCombat.CelestCombat;
 import dev.nighter.celestCombat.combat.CombatManager;
+import dev.nighter.celestCombat.configs.CombatConfig;
+import com.destroystokyo.paper.event.player.PlayerElytraBoostEvent;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityResurrectEvent;
+import org.bukkit.event.entity.EntityToggleGlideEvent;
 import org.bukkit.event.player.PlayerItemConsumeEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.PotionMeta;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionType;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RequiredArgsConstructor
@@ -44,7 +49,8 @@ public class ItemRestrictionListener implements Listener {
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onPlayerItemConsume(PlayerItemConsumeEvent event) {
         // Check if item restrictions are enabled
-        if (!plugin.getConfig().getBoolean("combat.item_restrictions.enabled", true)) {
+        CombatConfig.ItemRestrictions restrictions = plugin.getCombatConfig().itemRestrictions();
+        if (!restrictions.enabled()) {
             return;
         }
 
@@ -52,48 +58,77 @@ public class ItemRestrictionListener implements Listener {
         ItemStack item = event.getItem();
 
         if (combatManager.isInCombat(player)) {
-            List<String> disabledItems = plugin.getConfig().getStringList("combat.item_restrictions.disabled_items");
-
-            // Check if the consumed item is in the disabled items list
-            if (isItemDisabled(item.getType(), disabledItems)) {
+            // Check if the consumed item, or one of its potion effects, is disabled
+            if (restrictions.isDisabled(item.getType()) || hasDisabledEffect(item, restrictions)) {
                 event.setCancelled(true);
-
-                Map<String, String> placeholders = new HashMap<>();
-                placeholders.put("player", player.getName());
-                placeholders.put("item", formatItemName(item.getType()));
-                plugin.getMessageService().sendMessage(player, "item_use_blocked_in_combat", placeholders);
+                sendBlockedMessage(player, item.getType());
             }
         }
     }
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
-    public void onPlayerMoveEvent(PlayerMoveEvent event) {
-        // Check if item restrictions are enabled
-        if (!plugin.getConfig().getBoolean("combat.item_restrictions.enabled", true)) {
+    public void onEntityToggleGlide(EntityToggleGlideEvent event) {
+        // Only care about players starting to glide
+        if (!event.isGliding() || !(event.getEntity() instanceof Player player)) {
             return;
         }
 
+        if (plugin.getCombatConfig().itemRestrictions().isDisabled(Material.ELYTRA) && combatManager.isInCombat(player)) {
+            event.setCancelled(true);
+            sendBlockedMessage(player, Material.ELYTRA);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerElytraBoost(PlayerElytraBoostEvent event) {
         Player player = event.getPlayer();
 
-        if (combatManager.isInCombat(player)) {
-            List<String> disabledItems = plugin.getConfig().getStringList("combat.item_restrictions.disabled_items");
+        // Gliding players are grounded when tagged, this catches any boost that slips through
+        if (plugin.getCombatConfig().itemRestrictions().isDisabled(Material.ELYTRA) && combatManager.isInCombat(player)) {
+            event.setCancelled(true);
+            player.setGliding(false);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onEntityResurrect(EntityResurrectEvent event) {
+        if (!(event.getEntity() instanceof Player player)) {
+            return;
+        }
 
-            if (disabledItems.contains("ELYTRA") && player.isGliding()) {
-                player.setGliding(false);
+        if (plugin.getCombatConfig().itemRestrictions().isDisabled(Material.TOTEM_OF_UNDYING) && combatManager.isInCombat(player)) {
+            event.setCancelled(true);
+            sendBlockedMessage(player, Material.TOTEM_OF_UNDYING);
+        }
+    }
 
-                Map<String, String> placeholders = new HashMap<>();
-                placeholders.put("player", player.getName());
-                placeholders.put("item", "Elytra");
-                plugin.getMessageService().sendMessage(player, "item_use_blocked_in_combat", placeholders);
+    private boolean hasDisabledEffect(ItemStack item, CombatConfig.ItemRestrictions restrictions) {
+        if (restrictions.disabledPotionEffects().isEmpty() || !(item.getItemMeta() instanceof PotionMeta potionMeta)) {
+            return false;
+        }
+
+        PotionType baseType = potionMeta.getBasePotionType();
+        if (baseType != null) {
+            for (PotionEffect effect : baseType.getPotionEffects()) {
+                if (restrictions.isDisabled(effect.getType())) {
+                    return true;
+                }
             }
         }
+
+        for (PotionEffect effect : potionMeta.getCustomEffects()) {
+            if (restrictions.isDisabled(effect.getType())) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
-    private boolean isItemDisabled(Material itemType, List<String> disabledItems) {
-        return disabledItems.stream()
-                .anyMatch(disabledItem ->
-                        itemType.name().equalsIgnoreCase(disabledItem) ||
-                                itemType.name().contains(disabledItem)
-                );
+    private void sendBlockedMessage(Player player, Material material) {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("player", player.getName());
+        placeholders.put("item", formatItemName(material));
+        plugin.getMessageService().sendMessage(player, "item_use_blocked_in_combat", placeholders);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package dev.nighter.celestCombat.listeners;
+
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Receives the block-to-block movement of tagged players from {@link CombatMovementListener}
+ */
+public interface MovementConsumer {
+
+    /**
+     * Whether this consumer cares about movement in the given world
+     */
+    boolean isEnabledIn(World world);
+
+    /**
+     * Called when a tagged player moves into a different block in an enabled world
+     */
+    void onMove(MovementContext context);
+
+    /**
+     * Called when a player is no longer of interest, because they left combat
+     * or moved into a world where this consumer is disabled
+     */
+    void onMovementStopped(Player player);
+}
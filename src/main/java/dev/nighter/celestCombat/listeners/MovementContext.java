@@ -0,0 +1,48 @@
+package dev.nighter.celestCombat.listeners;
+
+import dev.nighter.celestCombat.combat.PlayerCombatSession;
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * A single block-to-block move of a tagged player, built once per move event
+ * and shared by every {@link MovementConsumer}
+ */
+@Getter
+public class MovementContext {
+    private final Player player;
+    private final PlayerCombatSession session;
+    private final World world;
+    private final Location from;
+    private final Location to;
+    private final int fromX;
+    private final int fromY;
+    private final int fromZ;
+    private final int toX;
+    private final int toY;
+    private final int toZ;
+
+    MovementContext(Player player, PlayerCombatSession session, Location from, Location to,
+                    int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        this.player = player;
+        this.session = session;
+        this.world = to.getWorld();
+        this.from = from;
+        this.to = to;
+        this.fromX = fromX;
+        this.fromY = fromY;
+        this.fromZ = fromZ;
+        this.toX = toX;
+        this.toY = toY;
+        this.toZ = toZ;
+    }
+
+    /**
+     * Whether the player stayed in the same world during this move
+     */
+    public boolean isSameWorld() {
+        return world != null && world.equals(from.getWorld());
+    }
+}
@@ -2,30 +2,34 @@ package dev.nighter.celestCombat.protection;
 
 import dev.nighter.celestCombat.CelestCombat;
 import dev.nighter.celestCombat.Scheduler;
+import dev.nighter.celestCombat.storage.ExpiryStore;
 import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.boss.BarColor;
 import org.bukkit.boss.BarStyle;
 import org.bukkit.boss.BossBar;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class NewbieProtectionManager {
     private final CelestCombat plugin;
-    private final File protectionFile;
-    private FileConfiguration protectionConfig;
+    // Grants and removals are queued and written behind by the auto-save task
+    private final ExpiryStore store;
 
-    // Protection storage - UUID -> expiration time in milliseconds
+    // Protection storage - UUID -> expiration time in milliseconds, only for online and recently active players
     @Getter private final Map<UUID, Long> protectedPlayers = new ConcurrentHashMap<>();
+    // When each player left, their protection is evicted once EVICTION_DELAY passed
+    private final Map<UUID, Long> offlineSince = new ConcurrentHashMap<>();
+    private final Object residencyLock = new Object();
 
     // Boss bars for countdown display
     private final Map<UUID, BossBar> protectionBossBars = new ConcurrentHashMap<>();
+    // Shared boss bars, one per second in which protections expire, and the second each player is shown
+    private final Map<Long, BossBar> sharedBossBars = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> sharedBossBarSeconds = new ConcurrentHashMap<>();
 
     // Configuration cache
     private boolean enabled;
@@ -36,6 +40,7 @@ public class NewbieProtectionManager {
     private String bossBarTitle;
     private BarColor bossBarColor;
     private BarStyle bossBarStyle;
+    private boolean shareBossBars;
     private Map<String, Boolean> worldProtectionSettings = new ConcurrentHashMap<>();
     private boolean protectFromPvP;
     private boolean protectFromMobs;
@@ -49,11 +54,12 @@ public class NewbieProtectionManager {
     // Constants
     private static final long UPDATE_INTERVAL = 20L; // 1 second in ticks
     private static final long CLEANUP_INTERVAL = 12000L; // 10 minutes in ticks
-    private static final long SAVE_INTERVAL = 6000L; // 5 minutes in ticks
+    private static final long SAVE_INTERVAL = 100L; // 5 seconds in ticks, only changes are written
+    private static final long EVICTION_DELAY = 300000L; // 5 minutes in milliseconds
 
     public NewbieProtectionManager(CelestCombat plugin) {
         this.plugin = plugin;
-        this.protectionFile = new File(plugin.getDataFolder(), "newbie_protection_data.yml");
+        this.store = ExpiryStore.open(plugin, "newbie_protection_data", NewbieProtectionManager::ownerOf);
 
         // Load configuration
         loadConfig();
@@ -80,6 +86,7 @@ public class NewbieProtectionManager {
         this.useBossBar = config.getBoolean("newbie_protection.display.use_bossbar", true);
         this.useActionBar = config.getBoolean("newbie_protection.display.use_actionbar", false);
         this.bossBarTitle = config.getString("newbie_protection.display.bossbar.title", "&#4CAF50PvP Protection: &#FFFFFF%time%");
+        this.shareBossBars = config.getBoolean("newbie_protection.display.bossbar.shared", true);
 
         // Parse boss bar color
         String colorStr = config.getString("newbie_protection.display.bossbar.color", "GREEN");
@@ -128,93 +135,94 @@ public class NewbieProtectionManager {
     }
 
     /**
-     * Loads protection data from the YAML file
+     * Loads the protections of the players already online, others are loaded when they log in
      */
     private void loadProtectionData() {
-        if (!protectionFile.exists()) {
-            try {
-                protectionFile.getParentFile().mkdirs();
-                protectionFile.createNewFile();
-                plugin.debug("Created new newbie_protection_data.yml file");
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to create newbie_protection_data.yml: " + e.getMessage());
-                return;
-            }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            UUID playerUUID = player.getUniqueId();
+            store.loadOwner(playerUUID).thenAccept(entries -> mergeLoaded(playerUUID, entries));
         }
+    }
 
-        protectionConfig = YamlConfiguration.loadConfiguration(protectionFile);
+    /**
+     * Loads the protection of a player who is logging in, blocks until it is read
+     * so it is in place before they join. Called off the main thread.
+     */
+    public void loadPlayer(UUID playerUUID) {
+        synchronized (residencyLock) {
+            offlineSince.remove(playerUUID);
+        }
+        if (protectedPlayers.containsKey(playerUUID)) return;
 
-        // Load protection data from file
-        int loadedCount = 0;
-        long currentTime = System.currentTimeMillis();
+        try {
+            mergeLoaded(playerUUID, store.loadOwner(playerUUID).join());
+        } catch (Exception e) {
+            plugin.getLogger().severe("Failed to load newbie protection of " + playerUUID + ": " + e.getMessage());
+        }
+    }
 
-        for (String uuidStr : protectionConfig.getKeys(false)) {
-            try {
-                UUID playerUUID = UUID.fromString(uuidStr);
-                long expirationTime = protectionConfig.getLong(uuidStr);
+    /**
+     * Marks a player as gone, their protection is evicted from memory a while later
+     */
+    public void unloadPlayer(UUID playerUUID) {
+        offlineSince.put(playerUUID, System.currentTimeMillis());
+    }
 
-                // Only load non-expired protections
-                if (expirationTime > currentTime) {
-                    protectedPlayers.put(playerUUID, expirationTime);
-                    loadedCount++;
+    private void mergeLoaded(UUID playerUUID, Map<String, Long> entries) {
+        Long expirationTime = entries.get(playerUUID.toString());
+        if (expirationTime == null) return;
+
+        synchronized (residencyLock) {
+            // Keep a protection granted while the read was running
+            protectedPlayers.putIfAbsent(playerUUID, expirationTime);
+        }
+        plugin.debug("Loaded newbie protection of " + playerUUID + " until " + new Date(expirationTime));
+    }
+
+    // Drops the protections of players who left more than EVICTION_DELAY ago, the store keeps them
+    private int evictOfflinePlayers(long currentTime) {
+        int evictedCount = 0;
+        for (Map.Entry<UUID, Long> entry : offlineSince.entrySet()) {
+            if (currentTime - entry.getValue() < EVICTION_DELAY) continue;
+
+            synchronized (residencyLock) {
+                // A player logging in again removed their entry first
+                if (offlineSince.remove(entry.getKey(), entry.getValue())
+                        && protectedPlayers.remove(entry.getKey()) != null) {
+                    evictedCount++;
                 }
-            } catch (IllegalArgumentException e) {
-                plugin.getLogger().warning("Invalid UUID in protection data: " + uuidStr);
             }
         }
-
-        plugin.getLogger().info("Loaded " + loadedCount + " active newbie protections");
+        return evictedCount;
     }
 
     /**
-     * Saves protection data to the YAML file
+     * Writes the protection changes made since the last save to the store
      */
     public void saveProtectionData() {
         saveProtectionData(false);
     }
 
     /**
-     * Saves protection data to the YAML file
+     * Writes the protection changes made since the last save to the store
      * @param synchronous if true, saves synchronously (used during shutdown)
      */
     public void saveProtectionData(boolean synchronous) {
-        if (protectionConfig == null) {
-            protectionConfig = new YamlConfiguration();
-        }
-
-        // Clear existing data
-        for (String key : protectionConfig.getKeys(false)) {
-            protectionConfig.set(key, null);
-        }
-
-        // Save current protections
-        long currentTime = System.currentTimeMillis();
-        for (Map.Entry<UUID, Long> entry : protectedPlayers.entrySet()) {
-            // Only save non-expired protections
-            if (entry.getValue() > currentTime) {
-                protectionConfig.set(entry.getKey().toString(), entry.getValue());
-            }
-        }
-
-        // Save to file
         if (synchronous || !plugin.isEnabled()) {
             // Save synchronously during shutdown or if plugin is disabled
-            try {
-                protectionConfig.save(protectionFile);
-                plugin.debug("Saved newbie protection data to file (synchronous)");
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to save newbie_protection_data.yml: " + e.getMessage());
-            }
+            store.flush();
         } else {
             // Save asynchronously during normal operation
-            Scheduler.runTaskAsync(() -> {
-                try {
-                    protectionConfig.save(protectionFile);
-                    plugin.debug("Saved newbie protection data to file");
-                } catch (IOException e) {
-                    plugin.getLogger().severe("Failed to save newbie_protection_data.yml: " + e.getMessage());
-                }
-            });
+            Scheduler.runTaskAsync(store::flush);
+        }
+    }
+
+    // Keys are player UUIDs
+    private static UUID ownerOf(String key) {
+        try {
+            return UUID.fromString(key);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
     }
 
@@ -244,6 +252,7 @@ public class NewbieProtectionManager {
         long expirationTime = System.currentTimeMillis() + (protectionDurationSeconds * 1000L);
 
         protectedPlayers.put(playerUUID, expirationTime);
+        store.put(playerUUID.toString(), expirationTime);
 
         // Create boss bar if enabled
         if (useBossBar) {
@@ -298,11 +307,10 @@ public class NewbieProtectionManager {
         boolean hadProtection = protectedPlayers.remove(playerUUID) != null;
 
         if (hadProtection) {
+            store.remove(playerUUID.toString());
+
             // Remove boss bar
-            BossBar bossBar = protectionBossBars.remove(playerUUID);
-            if (bossBar != null) {
-                bossBar.removeAll();
-            }
+            removeBossBar(player);
 
             plugin.debug("Removed newbie protection from " + player.getName());
         }
@@ -368,9 +376,11 @@ public class NewbieProtectionManager {
         UUID playerUUID = player.getUniqueId();
 
         // Remove existing boss bar if any
-        BossBar existingBar = protectionBossBars.get(playerUUID);
-        if (existingBar != null) {
-            existingBar.removeAll();
+        removeBossBar(player);
+
+        if (shareBossBars) {
+            joinSharedBossBar(player);
+            return;
         }
 
         // Create new boss bar
@@ -384,6 +394,62 @@ public class NewbieProtectionManager {
         protectionBossBars.put(playerUUID, bossBar);
     }
 
+    /**
+     * Shows a player the shared boss bar of the second their protection expires in.
+     * Everyone in it has the same time left, so its title is rendered once for all of them.
+     */
+    private void joinSharedBossBar(Player player) {
+        Long expirationTime = protectedPlayers.get(player.getUniqueId());
+        if (expirationTime == null) return;
+
+        long expirySecond = expirationTime / 1000;
+        BossBar bossBar = sharedBossBars.computeIfAbsent(expirySecond, second -> {
+            BossBar created = Bukkit.createBossBar("", bossBarColor, bossBarStyle);
+            applyBossBar(created, second - System.currentTimeMillis() / 1000);
+            return created;
+        });
+        bossBar.addPlayer(player);
+        sharedBossBarSeconds.put(player.getUniqueId(), expirySecond);
+    }
+
+    /**
+     * Removes a player's own or shared boss bar
+     */
+    private void removeBossBar(Player player) {
+        UUID playerUUID = player.getUniqueId();
+        BossBar bossBar = protectionBossBars.remove(playerUUID);
+        if (bossBar != null) {
+            bossBar.removeAll();
+        }
+
+        Long expirySecond = sharedBossBarSeconds.remove(playerUUID);
+        if (expirySecond == null) return;
+
+        BossBar sharedBar = sharedBossBars.get(expirySecond);
+        if (sharedBar == null) return;
+
+        sharedBar.removePlayer(player);
+        if (sharedBar.getPlayers().isEmpty() && sharedBossBars.remove(expirySecond, sharedBar)) {
+            sharedBar.removeAll();
+        }
+    }
+
+    /**
+     * Removes every boss bar, own and shared
+     */
+    private void removeAllBossBars() {
+        for (BossBar bossBar : protectionBossBars.values()) {
+            bossBar.removeAll();
+        }
+        protectionBossBars.clear();
+
+        for (BossBar bossBar : sharedBossBars.values()) {
+            bossBar.removeAll();
+        }
+        sharedBossBars.clear();
+        sharedBossBarSeconds.clear();
+    }
+
     /**
      * Updates boss bar for a protected player
      */
@@ -402,6 +468,30 @@ public class NewbieProtectionManager {
             return;
         }
 
+        applyBossBar(bossBar, remainingTime);
+    }
+
+    /**
+     * Updates every shared boss bar once, removing those whose second has passed
+     */
+    private void updateSharedBossBars() {
+        long currentSecond = System.currentTimeMillis() / 1000;
+
+        Iterator<Map.Entry<Long, BossBar>> iterator = sharedBossBars.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, BossBar> entry = iterator.next();
+            long remainingTime = entry.getKey() - currentSecond;
+            if (remainingTime <= 0 || entry.getValue().getPlayers().isEmpty()) {
+                entry.getValue().removeAll();
+                iterator.remove();
+                continue;
+            }
+
+            applyBossBar(entry.getValue(), remainingTime);
+        }
+    }
+
+    private void applyBossBar(BossBar bossBar, long remainingTime) {
         // Update title
         String title = bossBarTitle.replace("%time%", formatTime(remainingTime));
         title = plugin.getLanguageManager().colorize(title);
@@ -454,6 +544,11 @@ public class NewbieProtectionManager {
         }
 
         updateTask = Scheduler.runTaskTimer(() -> {
+            // Shared boss bars are updated once each, not once per player
+            if (useBossBar && shareBossBars) {
+                updateSharedBossBars();
+            }
+
             for (UUID playerUUID : new HashSet<>(protectedPlayers.keySet())) {
                 Player player = Bukkit.getPlayer(playerUUID);
                 if (player == null || !player.isOnline()) {
@@ -465,7 +560,7 @@ public class NewbieProtectionManager {
                 }
 
                 // Update boss bar
-                if (useBossBar) {
+                if (useBossBar && !shareBossBars) {
                     updateBossBar(player);
                 }
 
@@ -502,6 +597,8 @@ public class NewbieProtectionManager {
                         if (bossBar != null) {
                             bossBar.removeAll();
                         }
+                        // Shared boss bars are removed by the update task once their second passed
+                        sharedBossBarSeconds.remove(playerUUID);
                     });
 
                     removedCount++;
@@ -511,6 +608,11 @@ public class NewbieProtectionManager {
             if (removedCount > 0) {
                 plugin.debug("Cleaned up " + removedCount + " expired newbie protections");
             }
+
+            int evictedCount = evictOfflinePlayers(currentTime);
+            if (evictedCount > 0) {
+                plugin.debug("Evicted " + evictedCount + " newbie protections of offline players");
+            }
         }, CLEANUP_INTERVAL, CLEANUP_INTERVAL);
     }
 
@@ -522,7 +624,7 @@ public class NewbieProtectionManager {
             saveTask.cancel();
         }
 
-        saveTask = Scheduler.runTaskTimerAsync(this::saveProtectionData, SAVE_INTERVAL, SAVE_INTERVAL);
+        saveTask = Scheduler.runTaskTimerAsync(store::flush, SAVE_INTERVAL, SAVE_INTERVAL);
     }
 
     /**
@@ -539,7 +641,19 @@ public class NewbieProtectionManager {
      * Reloads configuration
      */
     public void reloadConfig() {
+        boolean wasSharingBossBars = shareBossBars;
         loadConfig();
+
+        // Move the boss bars of online players to the new mode
+        if (wasSharingBossBars != shareBossBars) {
+            removeAllBossBars();
+            for (UUID playerUUID : protectedPlayers.keySet()) {
+                Player player = Bukkit.getPlayer(playerUUID);
+                if (player != null && player.isOnline()) {
+                    createBossBar(player);
+                }
+            }
+        }
         plugin.debug("NewbieProtectionManager configuration reloaded");
     }
 
@@ -560,16 +674,13 @@ public class NewbieProtectionManager {
     }
 
     /**
-     * Handles player quit - clean up boss bars
+     * Handles player quit - clean up boss bars and schedule the eviction of their protection
      */
     public void handlePlayerQuit(Player player) {
         if (player == null) return;
 
-        UUID playerUUID = player.getUniqueId();
-        BossBar bossBar = protectionBossBars.remove(playerUUID);
-        if (bossBar != null) {
-            bossBar.removeAll();
-        }
+        unloadPlayer(player.getUniqueId());
+        removeBossBar(player);
     }
 
     /**
@@ -604,15 +715,13 @@ public class NewbieProtectionManager {
         }
 
         // Remove all boss bars
-        for (BossBar bossBar : protectionBossBars.values()) {
-            bossBar.removeAll();
-        }
-        protectionBossBars.clear();
+        removeAllBossBars();
 
-        // Save data
-        saveProtectionData(true);
+        // Write the last changes and close the store
+        store.close();
 
         // Clear collections
         protectedPlayers.clear();
+        offlineSince.clear();
     }
 }
\ No newline at end of file
@@ -2,10 +2,12 @@ package dev.nighter.celestCombat.rewards;
 
 import dev.nighter.celestCombat.CelestCombat;
 import dev.nighter.celestCombat.Scheduler;
+import dev.nighter.celestCombat.combat.DamageLedger;
+import dev.nighter.celestCombat.storage.ExpiryStore;
+import dev.nighter.celestCombat.storage.MappedCooldownTable;
 import lombok.Getter;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
@@ -16,11 +18,17 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class KillRewardManager {
     private final CelestCombat plugin;
-    private final File cooldownFile;
-    private FileConfiguration cooldownConfig;
+    // Holds every cooldown off the heap when enabled, the store and map below are then unused
+    private final MappedCooldownTable cooldownTable;
+    // Cooldown changes are queued and written behind by the auto-save task
+    private final ExpiryStore store;
 
-    // Cooldown storage - using String keys for better performance than UUID concatenation
+    // Cooldown storage - using String keys for better performance than UUID concatenation,
+    // only the cooldowns of online and recently active killers are kept in memory
     @Getter private final Map<String, Long> killRewardCooldowns = new ConcurrentHashMap<>();
+    // When each killer left, their cooldowns are evicted once EVICTION_DELAY passed
+    private final Map<UUID, Long> offlineSince = new ConcurrentHashMap<>();
+    private final Object residencyLock = new Object();
 
     // Configuration cache
     private boolean enabled;
@@ -29,6 +37,9 @@ public class KillRewardManager {
     private boolean useSamePlayerCooldown;
     private long globalCooldownDuration;
     private long samePlayerCooldownDuration;
+    private boolean assistEnabled;
+    private double assistMinDamageShare;
+    private List<String> assistCommands;
 
     // Tasks
     private Scheduler.Task cleanupTask;
@@ -36,13 +47,16 @@ public class KillRewardManager {
 
     // Constants
     private static final long CLEANUP_INTERVAL = 12000L; // 10 minutes in ticks
-    private static final long SAVE_INTERVAL = 6000L; // 5 minutes in ticks
+    private static final long SAVE_INTERVAL = 100L; // 5 seconds in ticks, only changes are written
+    private static final long EVICTION_DELAY = 300000L; // 5 minutes in milliseconds
     private static final String GLOBAL_COOLDOWN_PREFIX = "global:";
     private static final String PLAYER_COOLDOWN_PREFIX = "player:";
+    private static final String STORE_NAME = "kill_cooldowns_data";
 
     public KillRewardManager(CelestCombat plugin) {
         this.plugin = plugin;
-        this.cooldownFile = new File(plugin.getDataFolder(), "kill_cooldowns_data.yml");
+        this.cooldownTable = openCooldownTable();
+        this.store = cooldownTable == null ? ExpiryStore.open(plugin, STORE_NAME, KillRewardManager::ownerOf) : null;
 
         // Load configuration
         loadConfig();
@@ -69,97 +83,218 @@ public class KillRewardManager {
         this.globalCooldownDuration = plugin.getTimeFromConfigInMilliseconds("kill_rewards.cooldown.duration", "1d");
         this.samePlayerCooldownDuration = plugin.getTimeFromConfigInMilliseconds("kill_rewards.cooldown.same_player_duration", "1d");
 
+        this.assistEnabled = config.getBoolean("kill_rewards.assist.enabled", false);
+        this.assistMinDamageShare = config.getDouble("kill_rewards.assist.min_damage_share", 0.25);
+        this.assistCommands = config.getStringList("kill_rewards.assist.commands");
+
         plugin.debug("KillRewardManager config loaded - Enabled: " + enabled +
                 ", Global cooldown: " + useGlobalCooldown +
-                ", Same player cooldown: " + useSamePlayerCooldown);
+                ", Same player cooldown: " + useSamePlayerCooldown +
+                ", Assists: " + assistEnabled);
     }
 
     /**
-     * Loads cooldown data from the YAML file
+     * Opens the memory-mapped cooldown table if it is enabled
+     *
+     * @return The table, or null to use the configured storage instead
      */
-    private void loadCooldownData() {
-        if (!cooldownFile.exists()) {
-            try {
-                cooldownFile.getParentFile().mkdirs();
-                cooldownFile.createNewFile();
-                plugin.debug("Created new kill_cooldowns_data.yml file");
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to create kill_cooldowns_data.yml: " + e.getMessage());
-                return;
-            }
+    private MappedCooldownTable openCooldownTable() {
+        if (!plugin.getConfig().getBoolean("storage.kill_cooldowns_table", true)) {
+            return null;
         }
 
-        cooldownConfig = YamlConfiguration.loadConfiguration(cooldownFile);
+        File tableFile = new File(plugin.getDataFolder(), "kill_cooldowns.table");
+        MappedCooldownTable table = new MappedCooldownTable(plugin, tableFile);
+        try {
+            table.open();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open kill_cooldowns.table: " + e.getMessage());
+            plugin.getLogger().severe("Falling back to the configured storage for kill reward cooldowns");
+            return null;
+        }
 
-        // Load cooldowns from file
-        int loadedCount = 0;
-        long currentTime = System.currentTimeMillis();
+        if (!table.isMigrated()) {
+            migrateToTable(table);
+        }
+        plugin.getLogger().info("Loaded " + table.size() + " kill reward cooldowns from kill_cooldowns.table");
+        return table;
+    }
 
-        for (String key : cooldownConfig.getKeys(false)) {
-            long expirationTime = cooldownConfig.getLong(key);
+    /**
+     * Moves the cooldowns of the configured storage into the table in the background.
+     * The old data is cleared once the table is on disk, and the table is only marked
+     * as migrated after that, so a migration cut short runs again on the next start.
+     */
+    private void migrateToTable(MappedCooldownTable table) {
+        File dataFolder = plugin.getDataFolder();
+        boolean hasOldData = new File(dataFolder, "data.db").exists()
+                || new File(dataFolder, STORE_NAME + ".journal").exists()
+                || new File(dataFolder, STORE_NAME + ".yml").exists();
+        if (!hasOldData) {
+            table.markMigrated();
+            return;
+        }
+
+        ExpiryStore oldStore = ExpiryStore.open(plugin, STORE_NAME, KillRewardManager::ownerOf);
+        oldStore.loadAll().whenComplete((cooldowns, error) -> {
+            if (cooldowns != null) {
+                try {
+                    table.reserve(cooldowns.size());
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to grow kill_cooldowns.table: " + e.getMessage());
+                }
 
-            // Only load non-expired cooldowns
-            if (expirationTime > currentTime) {
-                killRewardCooldowns.put(key, expirationTime);
-                loadedCount++;
+                int migrated = 0;
+                for (Map.Entry<String, Long> entry : cooldowns.entrySet()) {
+                    UUID[] pair = pairOf(entry.getKey());
+                    if (pair == null) continue;
+
+                    // Keep cooldowns set while the migration was running
+                    table.putIfAbsent(pair[0], pair[1], entry.getValue());
+                    migrated++;
+                }
+                plugin.getLogger().info("Moved " + migrated + " kill reward cooldowns into kill_cooldowns.table");
+
+                try {
+                    table.maintain();
+                    // Turning the table off later must not bring back these cooldowns
+                    oldStore.clear();
+                    oldStore.flush();
+                    table.markMigrated();
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to save kill_cooldowns.table: " + e.getMessage());
+                }
             }
-        }
+            oldStore.close();
+        });
+    }
 
-        plugin.getLogger().info("Loaded " + loadedCount + " active kill reward cooldowns");
+    // The killer and victim of a stored key, the victim is null for global cooldowns
+    private static UUID[] pairOf(String key) {
+        try {
+            if (key.startsWith(GLOBAL_COOLDOWN_PREFIX)) {
+                return new UUID[]{UUID.fromString(key.substring(GLOBAL_COOLDOWN_PREFIX.length())), null};
+            }
+            if (key.startsWith(PLAYER_COOLDOWN_PREFIX)) {
+                String[] players = key.substring(PLAYER_COOLDOWN_PREFIX.length()).split(":");
+                if (players.length == 2) {
+                    return new UUID[]{UUID.fromString(players[0]), UUID.fromString(players[1])};
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Not a valid cooldown key
+        }
+        return null;
     }
 
     /**
-     * Saves cooldown data to the YAML file
+     * Loads the cooldowns of the players already online, others are loaded when they log in
      */
-    public void saveCooldownData() {
-        saveCooldownData(false);
+    private void loadCooldownData() {
+        // The table is mapped as a whole
+        if (cooldownTable != null) return;
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            store.loadOwner(player.getUniqueId()).thenAccept(this::mergeLoaded);
+        }
     }
 
     /**
-     * Saves cooldown data to the YAML file
-     * @param synchronous if true, saves synchronously (used during shutdown)
+     * Loads the cooldowns of a player who is logging in, blocks until they are read
+     * so they are in place before the player joins. Called off the main thread.
      */
-    public void saveCooldownData(boolean synchronous) {
-        if (cooldownConfig == null) {
-            cooldownConfig = new YamlConfiguration();
+    public void loadPlayer(UUID playerUUID) {
+        if (cooldownTable != null) return;
+
+        synchronized (residencyLock) {
+            offlineSince.remove(playerUUID);
         }
 
-        // Clear existing data
-        for (String key : cooldownConfig.getKeys(false)) {
-            cooldownConfig.set(key, null);
+        try {
+            mergeLoaded(store.loadOwner(playerUUID).join());
+        } catch (Exception e) {
+            plugin.getLogger().severe("Failed to load kill reward cooldowns of " + playerUUID + ": " + e.getMessage());
         }
+    }
 
-        // Save current cooldowns
-        long currentTime = System.currentTimeMillis();
-        for (Map.Entry<String, Long> entry : killRewardCooldowns.entrySet()) {
-            // Only save non-expired cooldowns
-            if (entry.getValue() > currentTime) {
-                cooldownConfig.set(entry.getKey(), entry.getValue());
+    /**
+     * Marks a player as gone, their cooldowns are evicted from memory a while later
+     */
+    public void unloadPlayer(UUID playerUUID) {
+        if (cooldownTable != null) return;
+
+        offlineSince.put(playerUUID, System.currentTimeMillis());
+    }
+
+    private void mergeLoaded(Map<String, Long> cooldowns) {
+        synchronized (residencyLock) {
+            // Keep cooldowns set while the read was running
+            cooldowns.forEach(killRewardCooldowns::putIfAbsent);
+        }
+    }
+
+    // Drops the cooldowns of killers who left more than EVICTION_DELAY ago, the store keeps them
+    private int evictOfflinePlayers(long currentTime) {
+        Set<UUID> evicted = new HashSet<>();
+        synchronized (residencyLock) {
+            for (Map.Entry<UUID, Long> entry : offlineSince.entrySet()) {
+                // A player logging in again removed their entry first
+                if (currentTime - entry.getValue() >= EVICTION_DELAY && offlineSince.remove(entry.getKey(), entry.getValue())) {
+                    evicted.add(entry.getKey());
+                }
             }
+            if (evicted.isEmpty()) return 0;
+
+            int before = killRewardCooldowns.size();
+            killRewardCooldowns.keySet().removeIf(key -> evicted.contains(ownerOf(key)));
+            return before - killRewardCooldowns.size();
         }
+    }
 
-        // Save to file
+    /**
+     * Writes the cooldown changes made since the last save to the store
+     */
+    public void saveCooldownData() {
+        saveCooldownData(false);
+    }
+
+    /**
+     * Writes the cooldown changes made since the last save to the store
+     * @param synchronous if true, saves synchronously (used during shutdown)
+     */
+    public void saveCooldownData(boolean synchronous) {
         if (synchronous || !plugin.isEnabled()) {
             // Save synchronously during shutdown or if plugin is disabled
+            flush();
+        } else {
+            // Save asynchronously during normal operation
+            Scheduler.runTaskAsync(this::flush);
+        }
+    }
+
+    private void flush() {
+        if (cooldownTable != null) {
+            // Also grows the table ahead of time, so inserts on the main thread never have to
             try {
-                cooldownConfig.save(cooldownFile);
-                plugin.debug("Saved kill reward cooldowns to file (synchronous)");
+                cooldownTable.maintain();
             } catch (IOException e) {
-                plugin.getLogger().severe("Failed to save kill_cooldowns_data.yml: " + e.getMessage());
+                plugin.getLogger().severe("Failed to grow kill_cooldowns.table: " + e.getMessage());
             }
         } else {
-            // Save asynchronously during normal operation
-            Scheduler.runTaskAsync(() -> {
-                try {
-                    cooldownConfig.save(cooldownFile);
-                    plugin.debug("Saved kill reward cooldowns to file");
-                } catch (IOException e) {
-                    plugin.getLogger().severe("Failed to save kill_cooldowns_data.yml: " + e.getMessage());
-                }
-            });
+            store.flush();
         }
     }
 
+    // Cooldowns belong to the killer, whose UUID follows the prefix
+    private static UUID ownerOf(String key) {
+        int start = key.indexOf(':') + 1;
+        int end = key.indexOf(':', start);
+        try {
+            return UUID.fromString(end < 0 ? key.substring(start) : key.substring(start, end));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 
     /**
      * Checks if a player is on cooldown for kill rewards
@@ -171,6 +306,15 @@ public class KillRewardManager {
 
         long currentTime = System.currentTimeMillis();
 
+        if (cooldownTable != null) {
+            if (useGlobalCooldown) {
+                return currentTime < cooldownTable.get(killer.getUniqueId(), null);
+            } else if (useSamePlayerCooldown && victim != null) {
+                return currentTime < cooldownTable.get(killer.getUniqueId(), victim.getUniqueId());
+            }
+            return false;
+        }
+
         if (useGlobalCooldown) {
             // Check global cooldown
             String globalKey = GLOBAL_COOLDOWN_PREFIX + killer.getUniqueId();
@@ -198,17 +342,27 @@ public class KillRewardManager {
 
         if (useGlobalCooldown) {
             // Set global cooldown
-            String globalKey = GLOBAL_COOLDOWN_PREFIX + killer.getUniqueId();
             long expirationTime = currentTime + globalCooldownDuration;
-            killRewardCooldowns.put(globalKey, expirationTime);
+            if (cooldownTable != null) {
+                cooldownTable.put(killer.getUniqueId(), null, expirationTime);
+            } else {
+                String globalKey = GLOBAL_COOLDOWN_PREFIX + killer.getUniqueId();
+                killRewardCooldowns.put(globalKey, expirationTime);
+                store.put(globalKey, expirationTime);
+            }
 
             plugin.debug("Set global kill reward cooldown for " + killer.getName() + " until " +
                     new Date(expirationTime));
         } else if (useSamePlayerCooldown && victim != null) {
             // Set same-player cooldown
-            String playerKey = PLAYER_COOLDOWN_PREFIX + killer.getUniqueId() + ":" + victim.getUniqueId();
             long expirationTime = currentTime + samePlayerCooldownDuration;
-            killRewardCooldowns.put(playerKey, expirationTime);
+            if (cooldownTable != null) {
+                cooldownTable.put(killer.getUniqueId(), victim.getUniqueId(), expirationTime);
+            } else {
+                String playerKey = PLAYER_COOLDOWN_PREFIX + killer.getUniqueId() + ":" + victim.getUniqueId();
+                killRewardCooldowns.put(playerKey, expirationTime);
+                store.put(playerKey, expirationTime);
+            }
 
             plugin.debug("Set same-player kill reward cooldown for " + killer.getName() +
                     " -> " + victim.getName() + " until " + new Date(expirationTime));
@@ -250,6 +404,42 @@ public class KillRewardManager {
         });
     }
 
+    /**
+     * Executes assist reward commands for a player who helped with the kill
+     */
+    private void executeAssistCommands(Player assister, Player killer, Player victim) {
+        if (assistCommands == null || assistCommands.isEmpty()) {
+            return;
+        }
+
+        AtomicBoolean anyCommandSuccessful = new AtomicBoolean(false);
+
+        Scheduler.runTask(() -> {
+            for (String command : assistCommands) {
+                String processedCommand = command
+                        .replace("%assister%", assister.getName())
+                        .replace("%killer%", killer.getName())
+                        .replace("%victim%", victim.getName());
+
+                try {
+                    Bukkit.dispatchCommand(Bukkit.getConsoleSender(), processedCommand);
+                    plugin.debug("Executed assist reward command: " + processedCommand);
+                    anyCommandSuccessful.set(true);
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Failed to execute assist reward command '" +
+                            processedCommand + "': " + e.getMessage());
+                }
+            }
+
+            if (anyCommandSuccessful.get() && assister.isOnline()) {
+                Map<String, String> placeholders = new HashMap<>();
+                placeholders.put("killer", killer.getName());
+                placeholders.put("victim", victim.getName());
+                plugin.getMessageService().sendMessage(assister, "kill_assist_reward_received", placeholders);
+            }
+        });
+    }
+
     /**
      * Sends kill reward message to the killer
      */
@@ -298,6 +488,46 @@ public class KillRewardManager {
         executeRewardCommands(killer, victim);
     }
 
+    /**
+     * Processes a kill event and rewards the killer plus every player who dealt
+     * enough of the victim's recent damage to count as an assist
+     *
+     * @param contributions The victim's attackers ordered by damage, see {@link DamageLedger}
+     */
+    public void giveKillReward(Player killer, Player victim, DamageLedger.Contribution[] contributions) {
+        giveKillReward(killer, victim);
+
+        if (!enabled || !assistEnabled || killer == null || victim == null || contributions == null) {
+            return;
+        }
+
+        for (DamageLedger.Contribution contribution : contributions) {
+            if (contribution.getShare() < assistMinDamageShare) {
+                break; // Sorted by damage, nobody after this qualifies
+            }
+
+            UUID assisterUUID = contribution.getAttackerUUID();
+            if (assisterUUID.equals(killer.getUniqueId()) || assisterUUID.equals(victim.getUniqueId())) {
+                continue;
+            }
+
+            Player assister = Bukkit.getPlayer(assisterUUID);
+            if (assister == null || !assister.isOnline()) {
+                continue;
+            }
+
+            // Assists respect the kill cooldowns so they can't be farmed, but don't start one
+            if (isOnCooldown(assister, victim)) {
+                plugin.debug("Assist reward cooldown active for " + assister.getName() + " -> " + victim.getName());
+                continue;
+            }
+
+            plugin.debug("Processing assist reward for " + assister.getName() + " -> " + victim.getName() +
+                    " (" + Math.round(contribution.getShare() * 100) + "% of damage)");
+            executeAssistCommands(assister, killer, victim);
+        }
+    }
+
     /**
      * Gets the remaining cooldown time for a player
      */
@@ -309,7 +539,13 @@ public class KillRewardManager {
         long currentTime = System.currentTimeMillis();
         Long cooldownEnd = null;
 
-        if (useGlobalCooldown) {
+        if (cooldownTable != null) {
+            if (useGlobalCooldown) {
+                cooldownEnd = cooldownTable.get(killer.getUniqueId(), null);
+            } else if (useSamePlayerCooldown && victim != null) {
+                cooldownEnd = cooldownTable.get(killer.getUniqueId(), victim.getUniqueId());
+            }
+        } else if (useGlobalCooldown) {
             String globalKey = GLOBAL_COOLDOWN_PREFIX + killer.getUniqueId();
             cooldownEnd = killRewardCooldowns.get(globalKey);
         } else if (useSamePlayerCooldown && victim != null) {
@@ -336,6 +572,14 @@ public class KillRewardManager {
             long currentTime = System.currentTimeMillis();
             int removedCount = 0;
 
+            if (cooldownTable != null) {
+                try {
+                    removedCount = cooldownTable.removeExpired(currentTime);
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to rebuild kill_cooldowns.table: " + e.getMessage());
+                }
+            }
+
             // Remove expired cooldowns
             Iterator<Map.Entry<String, Long>> iterator = killRewardCooldowns.entrySet().iterator();
             while (iterator.hasNext()) {
@@ -349,6 +593,11 @@ public class KillRewardManager {
             if (removedCount > 0) {
                 plugin.debug("Cleaned up " + removedCount + " expired kill reward cooldowns");
             }
+
+            int evictedCount = evictOfflinePlayers(currentTime);
+            if (evictedCount > 0) {
+                plugin.debug("Evicted " + evictedCount + " kill reward cooldowns of offline players");
+            }
         }, CLEANUP_INTERVAL, CLEANUP_INTERVAL);
     }
 
@@ -360,7 +609,7 @@ public class KillRewardManager {
             saveTask.cancel();
         }
 
-        saveTask = Scheduler.runTaskTimerAsync(this::saveCooldownData, SAVE_INTERVAL, SAVE_INTERVAL);
+        saveTask = Scheduler.runTaskTimerAsync(this::flush, SAVE_INTERVAL, SAVE_INTERVAL);
     }
 
     /**
@@ -369,13 +618,50 @@ public class KillRewardManager {
     public void clearPlayerCooldowns(Player player) {
         if (player == null) return;
 
+        if (cooldownTable != null) {
+            // Removing scans the whole table, keep it off the main thread
+            UUID playerUUID = player.getUniqueId();
+            String playerName = player.getName();
+            Scheduler.runTaskAsync(() -> {
+                int removed = cooldownTable.removeInvolving(playerUUID);
+                plugin.debug("Cleared " + removed + " kill reward cooldowns for " + playerName);
+            });
+            return;
+        }
+
         String playerUUID = player.getUniqueId().toString();
-        killRewardCooldowns.entrySet().removeIf(entry ->
-                entry.getKey().contains(playerUUID));
+        killRewardCooldowns.keySet().removeIf(key -> key.contains(playerUUID));
+        // Also the stored cooldowns of killers who are not in memory right now
+        store.removeInvolving(player.getUniqueId());
 
         plugin.debug("Cleared all kill reward cooldowns for " + player.getName());
     }
 
+    /**
+     * Clears the cooldowns of all players, including those of offline players that are only stored
+     *
+     * @return The number of cooldowns cleared, without the table only those that were in memory
+     */
+    public int clearAllCooldowns() {
+        if (cooldownTable != null) {
+            int cooldownCount = cooldownTable.size();
+            // Switching to an empty region writes to disk, keep it off the main thread
+            Scheduler.runTaskAsync(() -> {
+                try {
+                    cooldownTable.clear();
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to clear kill_cooldowns.table: " + e.getMessage());
+                }
+            });
+            return cooldownCount;
+        }
+
+        int cooldownCount = killRewardCooldowns.size();
+        killRewardCooldowns.clear();
+        store.clear();
+        return cooldownCount;
+    }
+
     /**
      * Shutdown method to clean up resources
      */
@@ -391,10 +677,15 @@ public class KillRewardManager {
             saveTask = null;
         }
 
-        // Save data
-        saveCooldownData(true);
+        // Write the last changes and close the table or store
+        if (cooldownTable != null) {
+            cooldownTable.close();
+        } else {
+            store.close();
+        }
 
         // Clear collections
         killRewardCooldowns.clear();
+        offlineSince.clear();
     }
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+package dev.nighter.celestCombat.storage;
+
+import dev.nighter.celestCombat.CelestCombat;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only binary journal of keys with an expiry time.
+ *
+ * Only changes are written: a key set to an expiry time, a key removed or all keys
+ * cleared. Changes are queued without blocking the caller and {@link #flush(Map)}
+ * appends everything queued since the last flush with a single fsync, so a save
+ * costs as much as the changes made since the last one. When the file holds many
+ * more records than there are live keys it is compacted: the live keys are written
+ * to a temporary file which then atomically replaces the journal.
+ *
+ * Every record carries a checksum. Loading replays the records in order and stops
+ * at the first torn or corrupt one, which is cut off, so a crash loses at most the
+ * changes that were not flushed yet.
+ */
+public class ExpiryJournal {
+    private static final int MAGIC = 0x43434A31; // "CCJ1"
+    private static final int HEADER_SIZE = Integer.BYTES;
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_CLEAR = 3;
+
+    // Compact once the file holds this many records and twice as many as there are live keys
+    private static final int COMPACT_MIN_RECORDS = 1024;
+
+    private final CelestCombat plugin;
+    private final Path path;
+    private final Path tempPath;
+    private final Queue<Record> queue = new ConcurrentLinkedQueue<>();
+
+    private FileChannel channel;
+    private int recordsInFile;
+
+    private record Record(byte type, String key, long expiresAt) {
+    }
+
+    public ExpiryJournal(CelestCombat plugin, File file) {
+        this.plugin = plugin;
+        this.path = file.toPath();
+        this.tempPath = file.toPath().resolveSibling(file.getName() + ".tmp");
+    }
+
+    /**
+     * Opens the journal and replays it into a map, skipping keys that already expired
+     *
+     * @return The number of live keys loaded
+     */
+    public synchronized int load(Map<String, Long> target, long currentTime) throws IOException {
+        Files.createDirectories(path.getParent());
+        // A leftover from a compaction that did not finish, the journal itself is still complete
+        Files.deleteIfExists(tempPath);
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            writeHeader(channel);
+            recordsInFile = 0;
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Keep reading until the whole file is in the buffer
+        }
+        buffer.flip();
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a journal file: " + path.getFileName());
+        }
+
+        long validEnd = replay(buffer, target);
+        if (validEnd < size) {
+            plugin.getLogger().warning("Journal " + path.getFileName() + " ends with a torn or corrupt record, "
+                    + (size - validEnd) + " bytes were dropped");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+
+        target.values().removeIf(expiresAt -> expiresAt <= currentTime);
+        return target.size();
+    }
+
+    /**
+     * Moves the keys of an old YAML data file into the journal, the file is renamed
+     * afterwards so this only happens once
+     *
+     * @return The number of live keys imported
+     */
+    public int migrateFromYaml(File yamlFile, Map<String, Long> target, long currentTime) {
+        if (!yamlFile.exists()) return 0;
+
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(yamlFile);
+        int imported = 0;
+        for (String key : yaml.getKeys(false)) {
+            long expiresAt = yaml.getLong(key);
+            if (expiresAt > currentTime) {
+                target.put(key, expiresAt);
+                put(key, expiresAt);
+                imported++;
+            }
+        }
+
+        File migrated = new File(yamlFile.getParentFile(), yamlFile.getName() + ".migrated");
+        if (!yamlFile.renameTo(migrated)) {
+            plugin.getLogger().warning("Could not rename " + yamlFile.getName() + " after moving it into " + path.getFileName());
+        }
+        return imported;
+    }
+
+    public void put(String key, long expiresAt) {
+        queue.add(new Record(RECORD_PUT, key, expiresAt));
+    }
+
+    public void remove(String key) {
+        queue.add(new Record(RECORD_REMOVE, key, 0L));
+    }
+
+    public void clear() {
+        queue.add(new Record(RECORD_CLEAR, "", 0L));
+    }
+
+    /**
+     * Appends the queued changes with one fsync, then compacts the journal if it grew
+     * too large compared to the live keys
+     *
+     * @param live The current keys and their expiry times, only read when compacting
+     */
+    public synchronized void flush(Map<?, Long> live) throws IOException {
+        if (channel == null) return;
+
+        Record record;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        int written = 0;
+        while ((record = queue.poll()) != null) {
+            buffer = encode(buffer, record);
+            written++;
+        }
+
+        if (written > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            recordsInFile += written;
+        }
+
+        if (recordsInFile >= COMPACT_MIN_RECORDS && recordsInFile > live.size() * 2) {
+            compact(live);
+        }
+    }
+
+    /**
+     * Flushes the queued changes and closes the file
+     */
+    public synchronized void close(Map<?, Long> live) throws IOException {
+        if (channel == null) return;
+
+        try {
+            flush(live);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the live keys. Changes queued meanwhile are
+     * appended to the new file by the next flush, replaying them again is harmless.
+     */
+    private void compact(Map<?, Long> live) throws IOException {
+        long currentTime = System.currentTimeMillis();
+        int records = 0;
+
+        try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(temp);
+
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (Map.Entry<?, Long> entry : live.entrySet()) {
+                if (entry.getValue() <= currentTime) continue;
+
+                buffer = encode(buffer, new Record(RECORD_PUT, entry.getKey().toString(), entry.getValue()));
+                records++;
+                if (buffer.position() > 48 * 1024) {
+                    writeFully(temp, buffer);
+                }
+            }
+            writeFully(temp, buffer);
+            temp.force(true);
+        }
+
+        channel.close();
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            recordsInFile = records;
+            plugin.debug("Compacted journal " + path.getFileName() + " to " + records + " records");
+        } finally {
+            // Keep appending to whichever file is in place now
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    // Returns the position after the last complete and valid record
+    private long replay(ByteBuffer buffer, Map<String, Long> target) {
+        CRC32 crc = new CRC32();
+        long validEnd = buffer.position();
+        int records = 0;
+
+        while (buffer.remaining() >= 1 + Short.BYTES) {
+            int start = buffer.position();
+            byte type = buffer.get();
+            int keyLength = Short.toUnsignedInt(buffer.getShort());
+            int valueLength = type == RECORD_PUT ? Long.BYTES : 0;
+            if (type < RECORD_PUT || type > RECORD_CLEAR || buffer.remaining() < keyLength + valueLength + Integer.BYTES) {
+                break;
+            }
+
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            long expiresAt = valueLength > 0 ? buffer.getLong() : 0L;
+
+            crc.reset();
+            crc.update(buffer.array(), start, buffer.position() - start);
+            if ((int) crc.getValue() != buffer.getInt()) break;
+
+            String key = new String(keyBytes, StandardCharsets.UTF_8);
+            switch (type) {
+                case RECORD_PUT -> target.put(key, expiresAt);
+                case RECORD_REMOVE -> target.remove(key);
+                default -> target.clear();
+            }
+            records++;
+            validEnd = buffer.position();
+        }
+
+        recordsInFile = records;
+        return validEnd;
+    }
+
+    private static ByteBuffer encode(ByteBuffer buffer, Record record) {
+        byte[] keyBytes = record.key().getBytes(StandardCharsets.UTF_8);
+        int size = 1 + Short.BYTES + keyBytes.length + (record.type() == RECORD_PUT ? Long.BYTES : 0) + Integer.BYTES;
+        if (buffer.remaining() < size) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + size));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+
+        int start = buffer.position();
+        buffer.put(record.type());
+        buffer.putShort((short) keyBytes.length);
+        buffer.put(keyBytes);
+        if (record.type() == RECORD_PUT) {
+            buffer.putLong(record.expiresAt());
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start, buffer.position() - start);
+        buffer.putInt((int) crc.getValue());
+        return buffer;
+    }
+
+    private static void writeHeader(FileChannel target) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.flip();
+        target.truncate(0);
+        while (header.hasRemaining()) {
+            target.write(header, header.position());
+        }
+        target.position(HEADER_SIZE);
+        target.force(true);
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,74 @@
+package dev.nighter.celestCombat.storage;
+
+import dev.nighter.celestCombat.CelestCombat;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Persistent keys with an expiry time, where every key belongs to a player.
+ *
+ * Reads complete asynchronously and only return keys that did not expire yet.
+ * Writes never block the caller, they are queued and written behind in batches
+ * by {@link #flush()}. A read sees every write queued before it.
+ */
+public interface ExpiryStore {
+
+    /**
+     * Opens the store configured under "storage.type", falling back to the journal
+     * if the database cannot be opened
+     *
+     * @param name Name of the data set, used for the table or file name
+     * @param ownerOf Finds the player a key belongs to
+     */
+    static ExpiryStore open(CelestCombat plugin, String name, Function<String, UUID> ownerOf) {
+        String type = plugin.getConfig().getString("storage.type", "sqlite");
+
+        if (type.equalsIgnoreCase("sqlite")) {
+            try {
+                return new SqliteExpiryStore(plugin, name, ownerOf);
+            } catch (Exception e) {
+                plugin.getLogger().severe("Failed to open the SQLite storage for " + name + ": " + e.getMessage());
+                plugin.getLogger().severe("Falling back to the journal storage for " + name);
+            }
+        } else if (!type.equalsIgnoreCase("journal")) {
+            plugin.getLogger().warning("Invalid storage type '" + type + "' in config. Using journal instead.");
+            plugin.getLogger().warning("Valid storage types are: sqlite, journal");
+        }
+
+        return new JournalExpiryStore(plugin, name, ownerOf);
+    }
+
+    /**
+     * Reads every key
+     */
+    CompletableFuture<Map<String, Long>> loadAll();
+
+    /**
+     * Reads the keys of one player
+     */
+    CompletableFuture<Map<String, Long>> loadOwner(UUID owner);
+
+    void put(String key, long expiresAt);
+
+    void remove(String key);
+
+    void clear();
+
+    /**
+     * Removes every key that contains a player's UUID, also those owned by other players
+     */
+    void removeInvolving(UUID player);
+
+    /**
+     * Writes the queued changes, blocks until they are stored
+     */
+    void flush();
+
+    /**
+     * Writes the queued changes and releases the store
+     */
+    void close();
+}
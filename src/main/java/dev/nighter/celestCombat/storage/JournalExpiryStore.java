@@ -0,0 +1,128 @@
+package dev.nighter.celestCombat.storage;
+
+import dev.nighter.celestCombat.CelestCombat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Stores keys in an {@link ExpiryJournal} file, keeping all of them in memory.
+ *
+ * Used when no database is configured or the database cannot be opened. An old
+ * YAML data file of the same name is moved into the journal on first start.
+ */
+public class JournalExpiryStore implements ExpiryStore {
+    private final CelestCombat plugin;
+    private final String fileName;
+    private final Function<String, UUID> ownerOf;
+    private final ExpiryJournal journal;
+    // Every live key, the journal is compacted from this
+    private final Map<String, Long> entries = new ConcurrentHashMap<>();
+
+    public JournalExpiryStore(CelestCombat plugin, String name, Function<String, UUID> ownerOf) {
+        this.plugin = plugin;
+        this.fileName = name + ".journal";
+        this.ownerOf = ownerOf;
+        this.journal = new ExpiryJournal(plugin, new File(plugin.getDataFolder(), fileName));
+
+        long currentTime = System.currentTimeMillis();
+        try {
+            journal.load(entries, currentTime);
+            if (journal.migrateFromYaml(new File(plugin.getDataFolder(), name + ".yml"), entries, currentTime) > 0) {
+                journal.flush(entries);
+                plugin.getLogger().info("Moved " + name + ".yml into " + fileName);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to load " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> loadAll() {
+        return CompletableFuture.completedFuture(copyLive(null));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> loadOwner(UUID owner) {
+        return CompletableFuture.completedFuture(copyLive(owner));
+    }
+
+    @Override
+    public void put(String key, long expiresAt) {
+        entries.put(key, expiresAt);
+        journal.put(key, expiresAt);
+    }
+
+    @Override
+    public void remove(String key) {
+        entries.remove(key);
+        journal.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        journal.clear();
+    }
+
+    @Override
+    public void removeInvolving(UUID player) {
+        String playerId = player.toString();
+        entries.keySet().removeIf(key -> {
+            if (!key.contains(playerId)) return false;
+            journal.remove(key);
+            return true;
+        });
+    }
+
+    @Override
+    public void flush() {
+        // Expired keys are left out of the next compaction
+        long currentTime = System.currentTimeMillis();
+        entries.values().removeIf(expiresAt -> expiresAt <= currentTime);
+
+        try {
+            journal.flush(entries);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to save " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            journal.close(entries);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to save " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the journal and renames its file, after its keys were moved into another store
+     */
+    void retire() {
+        close();
+        File file = new File(plugin.getDataFolder(), fileName);
+        if (file.exists() && !file.renameTo(new File(plugin.getDataFolder(), fileName + ".migrated"))) {
+            plugin.getLogger().warning("Could not rename " + fileName + " after moving it into the database");
+        }
+    }
+
+    // Live keys of one owner, or of everyone if the owner is null
+    private Map<String, Long> copyLive(UUID owner) {
+        long currentTime = System.currentTimeMillis();
+        Map<String, Long> result = new HashMap<>();
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            if (entry.getValue() <= currentTime) continue;
+            if (owner != null && !owner.equals(ownerOf.apply(entry.getKey()))) continue;
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,612 @@
+package dev.nighter.celestCombat.storage;
+
+import dev.nighter.celestCombat.CelestCombat;
+import dev.nighter.celestCombat.Scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An open-addressing hash table of cooldowns keyed by a pair of players, kept in a
+ * memory-mapped file.
+ *
+ * Every slot is a fixed record of the two UUIDs as four longs and the expiry time,
+ * so the table is both the live index and the saved data: opening it maps the file
+ * without reading it, and entries live in the page cache instead of the heap. A
+ * cooldown without a second player uses the nil UUID for it.
+ *
+ * Slots are probed linearly. Removed entries leave a tombstone so later entries of
+ * the same probe chain stay reachable. Lookups and writes never touch the disk:
+ * growing, compacting and forcing pages out happen in {@link #maintain()},
+ * {@link #removeExpired(long)} and {@link #clear()}, which run off the main thread.
+ * Filling the table past a third schedules {@link #maintain()} right away, and a
+ * burst of new pairs that comes before it is kept in a small overflow map on the
+ * heap until the next rebuild moves it into the file. A rebuild maps and zeroes a
+ * new region of the file without holding the table lock, holds it only to copy the
+ * live entries over, and points the header at the new region once that region is
+ * on disk.
+ */
+public class MappedCooldownTable {
+    private static final int MAGIC = 0x43435431; // "CCT1"
+    private static final int VERSION = 1;
+
+    // Header: magic, version, offset of the active region, flags
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_REGION_OFFSET = 8;
+    private static final int HEADER_FLAGS = 16;
+    private static final int FLAG_MIGRATED = 1;
+
+    // Region header: capacity, live entries, used slots, followed by the slots
+    private static final int REGION_HEADER_SIZE = 16;
+    private static final int REGION_CAPACITY = 0;
+    private static final int REGION_SIZE = 4;
+    private static final int REGION_USED = 8;
+
+    private static final int RECORD_SIZE = 5 * Long.BYTES;
+    private static final int EXPIRES_AT = 4 * Long.BYTES;
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 25;
+    // Growing is scheduled once this share of the slots is used, new pairs go to the overflow past MAX_LOAD
+    private static final double GROW_LOAD = 0.375;
+    private static final double MAX_LOAD = 0.875;
+    // Sweeps release the table lock after this many slots
+    private static final int SWEEP_CHUNK = 4096;
+
+    private final CelestCombat plugin;
+    private final Path path;
+    // Serializes rebuilds, sweeps and close, the only operations that change the layout of the file
+    private final Object maintenanceLock = new Object();
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer region;
+    private long regionOffset;
+    private int capacity;
+    private int size;
+    private int used;
+    // Pairs that did not fit in the region, moved into the file by the next rebuild
+    private final Map<PairKey, Long> overflow = new HashMap<>();
+    private boolean growScheduled;
+
+    private record PairKey(long k1, long k2, long k3, long k4) {
+    }
+
+    private interface SlotFilter {
+        boolean remove(int offset, long expiresAt);
+    }
+
+    public MappedCooldownTable(CelestCombat plugin, File file) {
+        this.plugin = plugin;
+        this.path = file.toPath();
+    }
+
+    /**
+     * Maps the table file, creating it if needed
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            boolean created = channel.size() < HEADER_SIZE;
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                mapRegion(HEADER_SIZE, MIN_CAPACITY, true);
+                header.putLong(HEADER_REGION_OFFSET, regionOffset);
+                header.force();
+                return;
+            }
+
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a cooldown table file: " + path.getFileName());
+            }
+
+            long offset = header.getLong(HEADER_REGION_OFFSET);
+            if (offset < HEADER_SIZE || offset + REGION_HEADER_SIZE > channel.size()) {
+                throw new IOException("Cooldown table " + path.getFileName() + " points outside the file");
+            }
+
+            ByteBuffer regionHeader = ByteBuffer.allocate(REGION_HEADER_SIZE);
+            while (regionHeader.hasRemaining() && channel.read(regionHeader, offset + regionHeader.position()) >= 0) {
+                // Keep reading until the whole region header is in the buffer
+            }
+            int storedCapacity = regionHeader.getInt(REGION_CAPACITY);
+            if (Integer.bitCount(storedCapacity) != 1 || storedCapacity < MIN_CAPACITY || storedCapacity > MAX_CAPACITY
+                    || offset + regionBytes(storedCapacity) > channel.size()) {
+                throw new IOException("Cooldown table " + path.getFileName() + " has a corrupt region");
+            }
+
+            mapRegion(offset, storedCapacity, false);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The expiry time of a cooldown, or 0 if there is none
+     */
+    public synchronized long get(UUID first, UUID second) {
+        if (region == null) return 0L;
+
+        PairKey key = keyOf(first, second);
+        int slot = find(key);
+        if (slot >= 0) return expiresAt(slot);
+        return overflow.isEmpty() ? 0L : overflow.getOrDefault(key, 0L);
+    }
+
+    public synchronized void put(UUID first, UUID second, long expiresAt) {
+        if (region == null || expiresAt <= 0) return;
+
+        PairKey key = keyOf(first, second);
+        int slot = find(key);
+        if (slot >= 0) {
+            region.putLong(offsetOf(slot) + EXPIRES_AT, expiresAt);
+            return;
+        }
+        if (overflow.containsKey(key)) {
+            overflow.put(key, expiresAt);
+            return;
+        }
+
+        insert(key, expiresAt);
+    }
+
+    /**
+     * Adds a cooldown unless the pair already has one
+     */
+    public synchronized void putIfAbsent(UUID first, UUID second, long expiresAt) {
+        if (region == null || expiresAt <= 0) return;
+
+        PairKey key = keyOf(first, second);
+        if (find(key) >= 0 || overflow.containsKey(key)) return;
+
+        insert(key, expiresAt);
+    }
+
+    /**
+     * Removes the cooldowns a player is part of, on either side of the pair. Scans the
+     * whole table, so it is meant to run off the main thread.
+     *
+     * @return The number of cooldowns removed
+     */
+    public int removeInvolving(UUID player) {
+        long most = player.getMostSignificantBits();
+        long least = player.getLeastSignificantBits();
+
+        synchronized (maintenanceLock) {
+            int removed;
+            synchronized (this) {
+                int before = overflow.size();
+                overflow.keySet().removeIf(key -> (key.k1() == most && key.k2() == least)
+                        || (key.k3() == most && key.k4() == least));
+                removed = before - overflow.size();
+            }
+
+            return removed + sweepSlots((offset, expiresAt) ->
+                    (region.getLong(offset) == most && region.getLong(offset + 8) == least)
+                            || (region.getLong(offset + 16) == most && region.getLong(offset + 24) == least));
+        }
+    }
+
+    /**
+     * Removes the cooldowns that expired, compacting the table if it holds more
+     * tombstones than entries. Meant to run off the main thread.
+     *
+     * @return The number of cooldowns removed
+     */
+    public int removeExpired(long currentTime) throws IOException {
+        synchronized (maintenanceLock) {
+            int removed;
+            synchronized (this) {
+                int before = overflow.size();
+                overflow.values().removeIf(expiresAt -> expiresAt <= currentTime);
+                removed = before - overflow.size();
+            }
+            removed += sweepSlots((offset, expiresAt) -> expiresAt <= currentTime);
+
+            int targetCapacity;
+            synchronized (this) {
+                if (region == null || used - size <= size || capacity <= MIN_CAPACITY) return removed;
+                targetCapacity = capacityFor(size + overflow.size());
+            }
+            rebuild(targetCapacity, true);
+            return removed;
+        }
+    }
+
+    /**
+     * Grows or compacts the table ahead of time so inserts rarely have to use the
+     * overflow, moves the overflow into the file and writes the changed pages to
+     * disk. Meant to run off the main thread.
+     */
+    public void maintain() throws IOException {
+        synchronized (maintenanceLock) {
+            int targetCapacity = 0;
+            synchronized (this) {
+                if (region == null) return;
+                growScheduled = false;
+
+                int fitting = capacityFor(size + overflow.size());
+                if ((!overflow.isEmpty() || used >= capacity * GROW_LOAD) && canMakeRoom(fitting)) {
+                    targetCapacity = fitting;
+                }
+            }
+
+            if (targetCapacity > 0) {
+                rebuild(targetCapacity, true);
+            }
+            force();
+        }
+    }
+
+    /**
+     * Grows the table to take that many more entries, for bulk inserts off the main thread
+     */
+    public void reserve(int entries) throws IOException {
+        synchronized (maintenanceLock) {
+            int targetCapacity;
+            synchronized (this) {
+                if (region == null) return;
+                targetCapacity = capacityFor(size + overflow.size() + entries);
+                if (targetCapacity <= capacity) return;
+            }
+            rebuild(targetCapacity, true);
+        }
+    }
+
+    /**
+     * Removes every cooldown by switching to a new empty region. Meant to run off the main thread.
+     */
+    public void clear() throws IOException {
+        synchronized (maintenanceLock) {
+            synchronized (this) {
+                if (region == null) return;
+            }
+            rebuild(MIN_CAPACITY, false);
+        }
+    }
+
+    public synchronized int size() {
+        return size + overflow.size();
+    }
+
+    /**
+     * @return True once the cooldowns of the previous storage were moved into the table
+     */
+    public synchronized boolean isMigrated() {
+        return header != null && (header.getInt(HEADER_FLAGS) & FLAG_MIGRATED) != 0;
+    }
+
+    /**
+     * Records in the file that the previous storage was moved into the table
+     */
+    public void markMigrated() {
+        synchronized (maintenanceLock) {
+            MappedByteBuffer current;
+            synchronized (this) {
+                current = header;
+            }
+            if (current == null) return;
+
+            current.putInt(HEADER_FLAGS, current.getInt(HEADER_FLAGS) | FLAG_MIGRATED);
+            current.force();
+        }
+    }
+
+    /**
+     * Writes the changed pages to disk, lookups and writes go on meanwhile
+     */
+    public void force() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            current = region;
+        }
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    public void close() {
+        synchronized (maintenanceLock) {
+            int targetCapacity = 0;
+            synchronized (this) {
+                if (region != null && !overflow.isEmpty()) {
+                    targetCapacity = Math.max(capacity, capacityFor(size + overflow.size()));
+                }
+            }
+            if (targetCapacity > 0) {
+                try {
+                    rebuild(targetCapacity, true);
+                } catch (IOException e) {
+                    plugin.getLogger().severe("Failed to save the overflow of " + path.getFileName() + ": " + e.getMessage());
+                }
+            }
+
+            force();
+            synchronized (this) {
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Failed to close " + path.getFileName() + ": " + e.getMessage());
+                } finally {
+                    channel = null;
+                    header = null;
+                    region = null;
+                    overflow.clear();
+                }
+            }
+        }
+    }
+
+    // Tombstones the slots matching the filter, releasing the table lock between chunks
+    private int sweepSlots(SlotFilter filter) {
+        int removed = 0;
+        // The capacity only changes in rebuilds, which wait for the maintenance lock
+        for (int start = 0; start < capacity(); start += SWEEP_CHUNK) {
+            synchronized (this) {
+                if (region == null) return removed;
+
+                int end = Math.min(capacity, start + SWEEP_CHUNK);
+                int removedInChunk = 0;
+                for (int slot = start; slot < end; slot++) {
+                    long expiresAt = expiresAt(slot);
+                    if (expiresAt > EMPTY && filter.remove(offsetOf(slot), expiresAt)) {
+                        region.putLong(offsetOf(slot) + EXPIRES_AT, TOMBSTONE);
+                        removedInChunk++;
+                    }
+                }
+                setSize(size - removedInChunk);
+                removed += removedInChunk;
+            }
+        }
+        return removed;
+    }
+
+    // A full table at the largest capacity without tombstones has nothing to gain from a rebuild
+    private boolean canMakeRoom(int targetCapacity) {
+        return targetCapacity != capacity || used > size || (!overflow.isEmpty() && used + 1 <= capacity * MAX_LOAD);
+    }
+
+    private synchronized int capacity() {
+        return capacity;
+    }
+
+    // Returns the slot of a pair, or -1
+    private int find(PairKey key) {
+        int mask = capacity - 1;
+        for (int slot = hash(key.k1(), key.k2(), key.k3(), key.k4()) & mask, probes = 0; probes < capacity;
+             slot = (slot + 1) & mask, probes++) {
+            long expiresAt = expiresAt(slot);
+            if (expiresAt == EMPTY) return -1;
+            if (expiresAt == TOMBSTONE) continue;
+
+            int offset = offsetOf(slot);
+            if (region.getLong(offset) == key.k1() && region.getLong(offset + 8) == key.k2()
+                    && region.getLong(offset + 16) == key.k3() && region.getLong(offset + 24) == key.k4()) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // Adds a pair that is not in the table yet, or to the overflow while the table waits to grow
+    private void insert(PairKey key, long expiresAt) {
+        if (used + 1 > capacity * MAX_LOAD) {
+            overflow.put(key, expiresAt);
+            scheduleGrowth();
+            return;
+        }
+
+        boolean reusesTombstone = writeSlot(region, capacity, key.k1(), key.k2(), key.k3(), key.k4(), expiresAt);
+        setSize(size + 1);
+        if (!reusesTombstone) {
+            setUsed(used + 1);
+        }
+        if (used >= capacity * GROW_LOAD) {
+            scheduleGrowth();
+        }
+    }
+
+    // Grows the table in the background instead of waiting for the next save
+    private void scheduleGrowth() {
+        if (growScheduled || !canMakeRoom(capacityFor(size + overflow.size()))) return;
+        growScheduled = true;
+
+        Scheduler.runTaskAsync(() -> {
+            try {
+                maintain();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to grow " + path.getFileName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Writes an entry into the first free slot of its probe chain, returns true if that was a tombstone
+    private static boolean writeSlot(MappedByteBuffer target, int capacity, long k1, long k2, long k3, long k4, long expiresAt) {
+        int mask = capacity - 1;
+        int slot = hash(k1, k2, k3, k4) & mask;
+        long current;
+        while ((current = target.getLong(offsetOf(slot) + EXPIRES_AT)) > EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+
+        int offset = offsetOf(slot);
+        target.putLong(offset, k1);
+        target.putLong(offset + 8, k2);
+        target.putLong(offset + 16, k3);
+        target.putLong(offset + 24, k4);
+        target.putLong(offset + EXPIRES_AT, expiresAt);
+        return current == TOMBSTONE;
+    }
+
+    /**
+     * Moves the table into a new region, copying the live entries and the overflow
+     * unless it is cleared. Called with the maintenance lock held, the table lock is
+     * only taken for the copy.
+     *
+     * The new region goes right after the header if it fits before the current one,
+     * and the file is then cut off after it. Otherwise it goes after the current
+     * region. Since capacities double, the older regions left before the active one
+     * never add up to more than twice the largest region the table had.
+     */
+    private void rebuild(int newCapacity, boolean keepEntries) throws IOException {
+        long newBytes = regionBytes(newCapacity);
+        long newOffset;
+        int oldCapacity;
+        synchronized (this) {
+            if (region == null) return;
+
+            oldCapacity = capacity;
+            newOffset = HEADER_SIZE + newBytes <= regionOffset ? HEADER_SIZE : regionOffset + regionBytes(capacity);
+        }
+
+        // Mapping and zeroing can take a while on large tables, lookups go on meanwhile
+        MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE, newOffset, newBytes);
+        // The space before the current region still holds an older one
+        zero(target, 0, newBytes);
+        target.putInt(REGION_CAPACITY, newCapacity);
+
+        int copied = 0;
+        synchronized (this) {
+            if (region == null) return;
+
+            if (keepEntries) {
+                long currentTime = System.currentTimeMillis();
+                for (int slot = 0; slot < capacity; slot++) {
+                    long expiresAt = expiresAt(slot);
+                    if (expiresAt <= currentTime) continue;
+
+                    int offset = offsetOf(slot);
+                    writeSlot(target, newCapacity, region.getLong(offset), region.getLong(offset + 8),
+                            region.getLong(offset + 16), region.getLong(offset + 24), expiresAt);
+                    copied++;
+                }
+
+                // Only at the largest capacity can the overflow not fit, the rest stays on the heap
+                Iterator<Map.Entry<PairKey, Long>> iterator = overflow.entrySet().iterator();
+                while (iterator.hasNext() && copied + 1 <= newCapacity * MAX_LOAD) {
+                    Map.Entry<PairKey, Long> entry = iterator.next();
+                    if (entry.getValue() > currentTime) {
+                        PairKey key = entry.getKey();
+                        writeSlot(target, newCapacity, key.k1(), key.k2(), key.k3(), key.k4(), entry.getValue());
+                        copied++;
+                    }
+                    iterator.remove();
+                }
+            } else {
+                overflow.clear();
+            }
+            target.putInt(REGION_SIZE, copied);
+            target.putInt(REGION_USED, copied);
+
+            // Writes go to the new region from here on
+            region = target;
+            regionOffset = newOffset;
+            capacity = newCapacity;
+            size = copied;
+            used = copied;
+        }
+
+        // Only once the new region is on disk does the file point at it
+        target.force();
+        header.putLong(HEADER_REGION_OFFSET, newOffset);
+        header.force();
+
+        if (newOffset == HEADER_SIZE) {
+            try {
+                channel.truncate(newOffset + newBytes);
+            } catch (IOException e) {
+                // Some platforms refuse to shrink a mapped file, the old region is reused next time
+            }
+        }
+        plugin.debug("Rebuilt " + path.getFileName() + " from " + oldCapacity + " to " + newCapacity
+                + " slots with " + copied + " cooldowns");
+    }
+
+    private void mapRegion(long offset, int regionCapacity, boolean initialize) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, offset, regionBytes(regionCapacity));
+        regionOffset = offset;
+        capacity = regionCapacity;
+
+        if (initialize) {
+            region.putInt(REGION_CAPACITY, regionCapacity);
+            region.putInt(REGION_SIZE, 0);
+            region.putInt(REGION_USED, 0);
+            region.force();
+        }
+        size = region.getInt(REGION_SIZE);
+        used = region.getInt(REGION_USED);
+    }
+
+    private static PairKey keyOf(UUID first, UUID second) {
+        return new PairKey(first.getMostSignificantBits(), first.getLeastSignificantBits(),
+                second == null ? 0L : second.getMostSignificantBits(), second == null ? 0L : second.getLeastSignificantBits());
+    }
+
+    private long expiresAt(int slot) {
+        return region.getLong(offsetOf(slot) + EXPIRES_AT);
+    }
+
+    private void setSize(int newSize) {
+        size = newSize;
+        region.putInt(REGION_SIZE, newSize);
+    }
+
+    private void setUsed(int newUsed) {
+        used = newUsed;
+        region.putInt(REGION_USED, newUsed);
+    }
+
+    private static int offsetOf(int slot) {
+        return REGION_HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    private static long regionBytes(int capacity) {
+        return REGION_HEADER_SIZE + (long) capacity * RECORD_SIZE;
+    }
+
+    // Smallest power of two keeping the table at most a quarter full
+    private static int capacityFor(int entries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity < entries * 4L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static void zero(MappedByteBuffer target, long from, long length) {
+        byte[] zeros = new byte[64 * 1024];
+        for (long position = from; position < from + length; position += zeros.length) {
+            int count = (int) Math.min(zeros.length, from + length - position);
+            target.put((int) position, zeros, 0, count);
+        }
+    }
+
+    private static int hash(long k1, long k2, long k3, long k4) {
+        long h = k1 * 0x9E3779B97F4A7C15L;
+        h = (h ^ k2) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ k3) * 0x165667B19E3779F9L;
+        h = (h ^ k4) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h;
+    }
+}
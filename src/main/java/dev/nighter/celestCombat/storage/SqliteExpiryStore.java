@@ -0,0 +1,244 @@
+package dev.nighter.celestCombat.storage;
+
+import dev.nighter.celestCombat.CelestCombat;
+import dev.nighter.celestCombat.Scheduler;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Stores keys in a table of the plugin's SQLite database, indexed by owner.
+ *
+ * Only the rows that are asked for are read. Writes are queued, and each flush
+ * folds the queue down to the last change per key and applies it in a single
+ * transaction. The driver ships with the server, so no dependency is added.
+ */
+public class SqliteExpiryStore implements ExpiryStore {
+    private static final String DATABASE_FILE = "data.db";
+    // Marks a queued removal
+    private static final long REMOVED = Long.MIN_VALUE;
+
+    private final CelestCombat plugin;
+    private final String table;
+    private final Function<String, UUID> ownerOf;
+    private final Connection connection;
+    private final Queue<PendingWrite> queue = new ConcurrentLinkedQueue<>();
+    private boolean closed;
+
+    // A null key clears the table, or only the keys of a player if one is given
+    private record PendingWrite(String key, long expiresAt, UUID involving) {
+    }
+
+    public SqliteExpiryStore(CelestCombat plugin, String name, Function<String, UUID> ownerOf) throws SQLException {
+        this.plugin = plugin;
+        this.table = name;
+        this.ownerOf = ownerOf;
+
+        File databaseFile = new File(plugin.getDataFolder(), DATABASE_FILE);
+        databaseFile.getParentFile().mkdirs();
+        this.connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+        try {
+            try (Statement statement = connection.createStatement()) {
+                // Each store has its own connection to the same file
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("PRAGMA busy_timeout=5000");
+                statement.execute("CREATE TABLE IF NOT EXISTS " + table
+                        + " (entry_key TEXT PRIMARY KEY, owner TEXT NOT NULL, expires_at INTEGER NOT NULL)");
+                statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_owner ON " + table + " (owner)");
+                statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_expires_at ON " + table + " (expires_at)");
+            }
+
+            migrateJournal(name);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> loadAll() {
+        return Scheduler.supplyAsync(() -> query("SELECT entry_key, expires_at FROM " + table + " WHERE expires_at > ?", null));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Long>> loadOwner(UUID owner) {
+        return Scheduler.supplyAsync(() -> query("SELECT entry_key, expires_at FROM " + table
+                + " WHERE owner = ? AND expires_at > ?", owner.toString()));
+    }
+
+    @Override
+    public void put(String key, long expiresAt) {
+        queue.add(new PendingWrite(key, expiresAt, null));
+    }
+
+    @Override
+    public void remove(String key) {
+        queue.add(new PendingWrite(key, REMOVED, null));
+    }
+
+    @Override
+    public void clear() {
+        queue.add(new PendingWrite(null, REMOVED, null));
+    }
+
+    @Override
+    public void removeInvolving(UUID player) {
+        queue.add(new PendingWrite(null, REMOVED, player));
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (closed) return;
+
+        // Only the last change of each key matters
+        boolean clearFirst = false;
+        Set<String> removedPlayers = new HashSet<>();
+        Map<String, Long> changes = new LinkedHashMap<>();
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            if (write.involving() != null) {
+                // Changes queued before it are deleted with the player's rows anyway
+                String player = write.involving().toString();
+                removedPlayers.add(player);
+                changes.keySet().removeIf(key -> key.contains(player));
+            } else if (write.key() == null) {
+                clearFirst = true;
+                removedPlayers.clear();
+                changes.clear();
+            } else {
+                changes.put(write.key(), write.expiresAt());
+            }
+        }
+
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement upsert = connection.prepareStatement("INSERT OR REPLACE INTO " + table
+                         + " (entry_key, owner, expires_at) VALUES (?, ?, ?)");
+                 PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table + " WHERE entry_key = ?");
+                 PreparedStatement deleteInvolving = connection.prepareStatement("DELETE FROM " + table + " WHERE entry_key LIKE ?");
+                 PreparedStatement deleteExpired = connection.prepareStatement("DELETE FROM " + table + " WHERE expires_at <= ?")) {
+
+                if (clearFirst) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("DELETE FROM " + table);
+                    }
+                }
+
+                // Before the upserts, which were all queued after these removals
+                for (String player : removedPlayers) {
+                    deleteInvolving.setString(1, "%" + player + "%");
+                    deleteInvolving.addBatch();
+                }
+                deleteInvolving.executeBatch();
+
+                for (Map.Entry<String, Long> change : changes.entrySet()) {
+                    if (change.getValue() == REMOVED) {
+                        delete.setString(1, change.getKey());
+                        delete.addBatch();
+                        continue;
+                    }
+
+                    UUID owner = ownerOf.apply(change.getKey());
+                    if (owner == null) continue;
+
+                    upsert.setString(1, change.getKey());
+                    upsert.setString(2, owner.toString());
+                    upsert.setLong(3, change.getValue());
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+                delete.executeBatch();
+
+                deleteExpired.setLong(1, System.currentTimeMillis());
+                deleteExpired.executeUpdate();
+            }
+            connection.commit();
+
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to save " + table + " to " + DATABASE_FILE + ": " + e.getMessage());
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+                // The next flush starts a new transaction anyway
+            }
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ignored) {
+                // Nothing left to undo
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        closed = true;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            plugin.getLogger().warning("Failed to close " + DATABASE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    // Flushes first, so queued writes are visible to the read
+    private synchronized Map<String, Long> query(String sql, String owner) {
+        Map<String, Long> result = new HashMap<>();
+        if (closed) return result;
+
+        flush();
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (owner != null) {
+                statement.setString(index++, owner);
+            }
+            statement.setLong(index, System.currentTimeMillis());
+
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    result.put(rows.getString(1), rows.getLong(2));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to read " + table + " from " + DATABASE_FILE + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    // Moves the keys of the journal, or of the older YAML file, into an empty table once
+    private void migrateJournal(String name) throws SQLException {
+        boolean hasOldData = new File(plugin.getDataFolder(), name + ".journal").exists()
+                || new File(plugin.getDataFolder(), name + ".yml").exists();
+        if (!hasOldData) return;
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            if (rows.next() && rows.getLong(1) > 0) return;
+        }
+
+        JournalExpiryStore journal = new JournalExpiryStore(plugin, name, ownerOf);
+        Map<String, Long> entries = journal.loadAll().join();
+        entries.forEach(this::put);
+        flush();
+        journal.retire();
+
+        plugin.getLogger().info("Moved " + entries.size() + " entries of " + name + " into " + DATABASE_FILE);
+    }
+}